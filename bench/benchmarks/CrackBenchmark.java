@@ -0,0 +1,74 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+package benchmarks;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks JMH des méthodes de recherche de clé (bruteForceCrack, smartCrack)
+ * sur des frames synthétiques chiffrées, paramétrés par résolution et clé.
+ * Les méthodes de cassage convertissent l'image en niveaux de gris depuis du BGR,
+ * d'où les seuls nombres de canaux 3 et 4.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class CrackBenchmark {
+
+    static { System.loadLibrary(Core.NATIVE_LIBRARY_NAME); }
+
+    @Param({"640x480", "1280x720", "1920x1080", "3840x2160", "7680x4320"})
+    public String resolution;
+
+    @Param({"3", "4"})
+    public int channels;
+
+    /**
+     * Clé au format r:s.
+     */
+    @Param({"5:10", "200:127"})
+    public String key;
+
+    private Mat encrypted;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        String[] parts = key.split(":");
+        Mat frame = FrameGenerator.create(resolution, channels);
+        encrypted = (Mat) Targets.ENCRYPT.invokeExact(frame, Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    @Benchmark
+    public Object bruteForceCrack() throws Throwable {
+        return (Object) Targets.BRUTE_FORCE_CRACK.invokeExact(encrypted);
+    }
+
+    @Benchmark
+    public Object smartCrack() throws Throwable {
+        return (Object) Targets.SMART_CRACK.invokeExact(encrypted);
+    }
+
+    /**
+     * Lance les benchmarks de cette classe avec le profileur d'allocation (gc).
+     *
+     * @param args arguments de la ligne de commande
+     * @throws RunnerException si l'exécution de JMH échoue
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CrackBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,49 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+package benchmarks;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.SplittableRandom;
+
+/**
+ * Génère des frames synthétiques pour les benchmarks, sans dépendre d'un fichier d'entrée.
+ * Le contenu est un dégradé lisse bruité, proche d'une image naturelle :
+ * les lignes voisines se ressemblent, ce que les méthodes de cassage de clé exploitent.
+ */
+final class FrameGenerator {
+
+    private FrameGenerator() {
+    }
+
+    /**
+     * Crée une frame synthétique.
+     *
+     * @param resolution la résolution au format LARGEURxHAUTEUR (par exemple 1920x1080)
+     * @param channels le nombre de canaux (1, 3 ou 4)
+     * @return la frame générée
+     */
+    static Mat create(String resolution, int channels) {
+        String[] parts = resolution.split("x");
+        int width = Integer.parseInt(parts[0]);
+        int height = Integer.parseInt(parts[1]);
+
+        SplittableRandom random = new SplittableRandom(42);
+        byte[] data = new byte[width * height * channels];
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double base = 96 + 64 * Math.sin(x * 0.013 + y * 0.007) + 32 * Math.cos(y * 0.021);
+                for (int c = 0; c < channels; c++) {
+                    int value = (int) (base + 24 * c + random.nextInt(9) - 4);
+                    data[index++] = (byte) Math.max(0, Math.min(255, value));
+                }
+            }
+        }
+
+        Mat frame = new Mat(height, width, CvType.CV_8UC(channels));
+        frame.put(0, 0, data);
+        return frame;
+    }
+}
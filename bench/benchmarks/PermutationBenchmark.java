@@ -0,0 +1,97 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+package benchmarks;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks JMH du chiffrement et du déchiffrement statiques (r, s),
+ * paramétrés par résolution, nombre de canaux et clé.
+ * Compare les variantes allouant une nouvelle Mat à celles écrivant dans une Mat fournie.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PermutationBenchmark {
+
+    static { System.loadLibrary(Core.NATIVE_LIBRARY_NAME); }
+
+    @Param({"640x480", "1280x720", "1920x1080", "3840x2160", "7680x4320"})
+    public String resolution;
+
+    @Param({"1", "3", "4"})
+    public int channels;
+
+    /**
+     * Clé au format r:s.
+     */
+    @Param({"5:10", "200:127"})
+    public String key;
+
+    private Mat frame;
+    private Mat output;
+    private Object scratch;
+    private int r, s;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        frame = FrameGenerator.create(resolution, channels);
+        output = new Mat();
+        scratch = Targets.NEW_SCRATCH.invokeExact();
+        String[] parts = key.split(":");
+        r = Integer.parseInt(parts[0]);
+        s = Integer.parseInt(parts[1]);
+    }
+
+    @Benchmark
+    public Mat encryptAllocating() throws Throwable {
+        return (Mat) Targets.ENCRYPT.invokeExact(frame, r, s);
+    }
+
+    @Benchmark
+    public Mat encryptInto() throws Throwable {
+        Targets.ENCRYPT_INTO.invokeExact(frame, output, r, s);
+        return output;
+    }
+
+    @Benchmark
+    public Mat encryptIntoScratch() throws Throwable {
+        Targets.ENCRYPT_INTO_SCRATCH.invokeExact(frame, output, r, s, scratch);
+        return output;
+    }
+
+    @Benchmark
+    public Mat decryptAllocating() throws Throwable {
+        return (Mat) Targets.DECRYPT.invokeExact(frame, r, s);
+    }
+
+    @Benchmark
+    public Mat decryptInto() throws Throwable {
+        Targets.DECRYPT_INTO.invokeExact(frame, output, r, s);
+        return output;
+    }
+
+    /**
+     * Lance les benchmarks de cette classe avec le profileur d'allocation (gc).
+     *
+     * @param args arguments de la ligne de commande
+     * @throws RunnerException si l'exécution de JMH échoue
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PermutationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
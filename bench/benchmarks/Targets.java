@@ -0,0 +1,54 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+package benchmarks;
+
+import org.opencv.core.Mat;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Accès aux méthodes mesurées de l'application.
+ * JMH impose un package aux classes de benchmark, alors que les classes de l'application
+ * sont dans le package par défaut, qui ne peut pas être importé : on passe donc par des
+ * MethodHandle statiques finaux, que le JIT traite comme des appels directs.
+ */
+final class Targets {
+
+    static final MethodHandle ENCRYPT;
+    static final MethodHandle ENCRYPT_INTO;
+    static final MethodHandle ENCRYPT_INTO_SCRATCH;
+    static final MethodHandle DECRYPT;
+    static final MethodHandle DECRYPT_INTO;
+    static final MethodHandle BRUTE_FORCE_CRACK;
+    static final MethodHandle SMART_CRACK;
+    static final MethodHandle NEW_SCRATCH;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> encryption = Class.forName("Encryption");
+            Class<?> scratch = Class.forName("ScratchBuffers");
+            Class<?> key = Class.forName("Key");
+
+            ENCRYPT = lookup.findStatic(encryption, "encrypt", MethodType.methodType(Mat.class, Mat.class, int.class, int.class));
+            ENCRYPT_INTO = lookup.findStatic(encryption, "encrypt", MethodType.methodType(void.class, Mat.class, Mat.class, int.class, int.class));
+            ENCRYPT_INTO_SCRATCH = lookup.findStatic(encryption, "encrypt", MethodType.methodType(void.class, Mat.class, Mat.class, int.class, int.class, scratch))
+                    .asType(MethodType.methodType(void.class, Mat.class, Mat.class, int.class, int.class, Object.class));
+            DECRYPT = lookup.findStatic(encryption, "decrypt", MethodType.methodType(Mat.class, Mat.class, int.class, int.class));
+            DECRYPT_INTO = lookup.findStatic(encryption, "decrypt", MethodType.methodType(void.class, Mat.class, Mat.class, int.class, int.class));
+            BRUTE_FORCE_CRACK = lookup.findStatic(encryption, "bruteForceCrack", MethodType.methodType(key, Mat.class))
+                    .asType(MethodType.methodType(Object.class, Mat.class));
+            SMART_CRACK = lookup.findStatic(encryption, "smartCrack", MethodType.methodType(key, Mat.class))
+                    .asType(MethodType.methodType(Object.class, Mat.class));
+            NEW_SCRATCH = lookup.findConstructor(scratch, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Targets() {
+    }
+}
@@ -0,0 +1,355 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Point d'entrée en ligne de commande, sans interface graphique, pour traiter
+ * des lots de vidéos. Réutilise Encryption et SegmentedExport : un lot interrompu puis relancé
+ * reprend chaque fichier inachevé à son dernier segment terminé.
+ *
+ * Usage :
+ * <pre>
+ * java --add-modules jdk.incubator.vector BatchScrambler --mode MODE [-r R -s S] [-k K] -o DOSSIER [-j N] [--segments N] FICHIER_OU_GLOB...
+ * </pre>
+ * Sans l'option --add-modules, les calculs de recherche de clé retombent sur leur version scalaire
+ * (voir {@link RowKernels}).
+ * Modes : encrypt, decrypt (clé statique r, s), dynamic-encrypt, dynamic-decrypt (graine k),
+ * auto (déchiffrement avec suivi de clé : la clé est recherchée à la première frame de chaque segment,
+ * puis revalidée à chaque frame et recherchée à nouveau seulement si elle ne convient plus, voir {@link KeyTracker}).
+ */
+public class BatchScrambler {
+
+    static { System.loadLibrary(Core.NATIVE_LIBRARY_NAME); }
+
+    /**
+     * Point d'entrée principal.
+     *
+     * @param args arguments de la ligne de commande
+     */
+    public static void main(String[] args) {
+        String mode = null;
+        int r = 3, s = 7, k = 0;
+        int jobs = 1;
+        int segments = 0;
+        String outDir = null;
+        List<String> patterns = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--mode": case "-m": mode = args[++i]; break;
+                    case "-r": r = Integer.parseInt(args[++i]); break;
+                    case "-s": s = Integer.parseInt(args[++i]); break;
+                    case "-k": k = Integer.parseInt(args[++i]); break;
+                    case "--jobs": case "-j": jobs = Math.max(1, Integer.parseInt(args[++i])); break;
+                    case "--segments": segments = Math.max(1, Integer.parseInt(args[++i])); break;
+                    case "--out": case "-o": outDir = args[++i]; break;
+                    case "--help": case "-h": printUsage(); return;
+                    default: patterns.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.err.println("Erreur : arguments invalides.");
+            printUsage();
+            System.exit(2);
+        }
+
+        if (createProcessor(mode, r, s, k) == null || outDir == null || patterns.isEmpty()) {
+            printUsage();
+            System.exit(2);
+        }
+        if (r < 0 || r > 255 || s < 0 || s > 127) {
+            System.err.println("Erreur : r doit être compris entre 0 et 255, et s entre 0 et 127.");
+            System.exit(2);
+        }
+
+        List<Path> inputs;
+        try {
+            inputs = expand(patterns);
+        } catch (IOException e) {
+            System.err.println("Erreur : impossible de parcourir les fichiers d'entrée (" + e.getMessage() + ")");
+            System.exit(2);
+            return;
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Erreur : aucun fichier ne correspond aux motifs donnés.");
+            System.exit(2);
+        }
+
+        File out = new File(outDir);
+        if (!out.isDirectory() && !out.mkdirs()) {
+            System.err.println("Erreur : impossible de créer le dossier de sortie " + outDir);
+            System.exit(2);
+        }
+        Map<Path, File> outputs = outputFiles(inputs, out);
+        if (outputs == null) System.exit(2);
+
+        // Un processeur par segment : le suivi de clé du mode auto est propre à chaque plage de frames
+        String finalMode = mode;
+        int finalR = r, finalS = s, finalK = k;
+        String configuration = mode + "|" + r + "|" + s + "|" + k;
+        boolean ok = runBatch(outputs, log -> createProcessor(finalMode, finalR, finalS, finalK, log), configuration,
+                jobs, segments);
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Crée le processeur correspondant au mode demandé.
+     *
+     * @param mode le nom du mode
+     * @param r le paramètre r de la clé statique
+     * @param s le paramètre s de la clé statique
+     * @param k la graine du mode dynamique
+     * @return le processeur, ou null si le mode est inconnu
+     */
+    static FrameProcessor createProcessor(String mode, int r, int s, int k) {
+        return createProcessor(mode, r, s, k, null);
+    }
+
+    /**
+     * Crée le processeur correspondant au mode demandé, en consignant les vérifications de clé
+     * du déchiffrement dynamique.
+     *
+     * @param mode le nom du mode
+     * @param r le paramètre r de la clé statique
+     * @param s le paramètre s de la clé statique
+     * @param k la graine du mode dynamique
+     * @param keyChecks reçoit les vérifications de clé (peut être null)
+     * @return le processeur, ou null si le mode est inconnu
+     */
+    static FrameProcessor createProcessor(String mode, int r, int s, int k, KeyCheckLog keyChecks) {
+        if (mode == null) return null;
+        switch (mode) {
+            case "encrypt": return FrameProcessor.encrypt(r, s);
+            case "decrypt": return FrameProcessor.decrypt(r, s);
+            case "dynamic-encrypt": return FrameProcessor.dynamicEncrypt(k);
+            case "dynamic-decrypt": return FrameProcessor.dynamicDecrypt(k, keyChecks);
+            case "auto": return FrameProcessor.autoDecrypt();
+            default: return null;
+        }
+    }
+
+    /**
+     * Traite tous les fichiers, plusieurs à la fois, et affiche un bilan de débit.
+     *
+     * @param outputs les vidéos à traiter, associées à leur fichier de sortie
+     * @param processors fournit le traitement à appliquer, une instance par segment,
+     *                   à partir du bilan des vérifications de clé du fichier
+     * @param configuration décrit le mode et ses paramètres, pour la reprise des exports interrompus
+     * @param jobs le nombre de fichiers traités simultanément
+     * @param segments le nombre de segments traités en parallèle par fichier (0 ou moins : automatique)
+     * @return true si tous les fichiers ont été traités avec succès
+     */
+    private static boolean runBatch(Map<Path, File> outputs, Function<KeyCheckLog, FrameProcessor> processors,
+                                    String configuration, int jobs, int segments) {
+        // Les cœurs sont partagés entre les fichiers traités en même temps
+        int segmentsPerFile = segments > 0 ? segments : Math.max(1, SegmentedExport.DEFAULT_SEGMENTS / jobs);
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        AtomicLong totalFrames = new AtomicLong();
+        long start = System.nanoTime();
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (Map.Entry<Path, File> entry : outputs.entrySet()) {
+            results.add(executor.submit(() -> processFile(entry.getKey(), entry.getValue(), processors, configuration,
+                    segmentsPerFile, totalFrames)));
+        }
+
+        int failures = 0;
+        for (Future<Boolean> result : results) {
+            try {
+                if (!result.get()) failures++;
+            } catch (Exception e) {
+                failures++;
+            }
+        }
+        executor.shutdown();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long frames = totalFrames.get();
+        System.out.println("Terminé : " + (outputs.size() - failures) + "/" + outputs.size() + " fichier(s), "
+                + frames + " frames en " + String.format("%.1f", seconds) + " s ("
+                + String.format("%.1f", frames / Math.max(seconds, 1e-9)) + " frames/s)");
+        return failures == 0;
+    }
+
+    /**
+     * Traite un fichier en affichant son avancement par paliers de 10 %.
+     *
+     * @param input la vidéo source
+     * @param output le fichier de sortie
+     * @param processors fournit le traitement à appliquer, une instance par segment,
+     *                   à partir du bilan des vérifications de clé du fichier
+     * @param configuration décrit le mode et ses paramètres, pour la reprise des exports interrompus
+     * @param segments le nombre de segments traités en parallèle pour ce fichier
+     * @param totalFrames le compteur global de frames traitées
+     * @return true si le fichier a été traité avec succès
+     */
+    private static boolean processFile(Path input, File output, Function<KeyCheckLog, FrameProcessor> processors,
+                                       String configuration, int segments, AtomicLong totalFrames) {
+        String name = input.getFileName().toString();
+        File parent = output.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            System.err.println("[" + name + "] échec : impossible de créer le dossier " + parent);
+            return false;
+        }
+
+        int[] lastStep = {0};
+        long start = System.nanoTime();
+        try {
+            // L'export segmenté signale son avancement depuis plusieurs threads
+            DoubleConsumer progress = p -> {
+                synchronized (lastStep) {
+                    int step = (int) (p * 10);
+                    if (step > lastStep[0] && step < 10) {
+                        lastStep[0] = step;
+                        System.out.println("[" + name + "] " + (step * 10) + " %");
+                    }
+                }
+            };
+            KeyCheckLog keyChecks = new KeyCheckLog();
+            long frames = new SegmentedExport(input.toString(), output.getPath(), () -> processors.apply(keyChecks),
+                    configuration, segments).run(progress);
+            if (frames < 0) {
+                System.err.println("[" + name + "] échec : source ou destination invalide");
+                return false;
+            }
+            totalFrames.addAndGet(frames);
+            if (keyChecks.mismatches() > 0) System.out.println("[" + name + "] attention : " + keyChecks.summary());
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println("[" + name + "] terminé : " + frames + " frames en "
+                    + String.format("%.1f", seconds) + " s -> " + output.getPath());
+            return true;
+        } catch (Exception e) {
+            System.err.println("[" + name + "] échec : " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Associe à chaque vidéo son fichier de sortie (.avi). L'arborescence des vidéos, à partir de
+     * leur dossier commun, est reproduite dans le dossier de sortie : deux vidéos de même nom
+     * dans des dossiers différents ne s'écrasent donc pas.
+     *
+     * @param inputs les vidéos à traiter
+     * @param outDir le dossier de sortie
+     * @return les fichiers de sortie, dans l'ordre des vidéos, ou null si deux vidéos du même dossier
+     *         ne diffèrent que par leur extension (le conflit est alors signalé)
+     */
+    static Map<Path, File> outputFiles(List<Path> inputs, File outDir) {
+        Path common = null;
+        for (Path input : inputs) {
+            Path parent = input.toAbsolutePath().normalize().getParent();
+            if (common == null) {
+                common = parent;
+            } else {
+                while (common != null && !parent.startsWith(common)) common = common.getParent();
+            }
+            // Racines différentes (plusieurs lecteurs) : l'arborescence est reproduite depuis la racine
+            if (common == null) break;
+        }
+
+        Map<Path, File> outputs = new LinkedHashMap<>();
+        Map<Path, Path> owners = new HashMap<>();
+        for (Path input : inputs) {
+            Path parent = input.toAbsolutePath().normalize().getParent();
+            Path relative = common != null ? common.relativize(parent) : parent.getRoot().relativize(parent);
+            String name = input.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            String baseName = dot > 0 ? name.substring(0, dot) : name;
+            Path output = outDir.toPath().resolve(relative).resolve(baseName + ".avi").toAbsolutePath().normalize();
+
+            Path owner = owners.putIfAbsent(output, input);
+            if (owner != null) {
+                System.err.println("Erreur : " + owner + " et " + input + " seraient tous deux écrits dans " + output);
+                return null;
+            }
+            outputs.put(input, output.toFile());
+        }
+        return outputs;
+    }
+
+    /**
+     * Développe les motifs glob (par exemple videos/**.mp4) en liste de fichiers.
+     * Un argument sans caractère joker est pris tel quel.
+     *
+     * @param patterns les motifs ou chemins donnés en argument
+     * @return les fichiers correspondants, sans doublon, dans l'ordre des motifs
+     * @throws IOException si un dossier ne peut pas être parcouru
+     */
+    static List<Path> expand(List<String> patterns) throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String pattern : patterns) {
+            int wildcard = indexOfWildcard(pattern);
+            if (wildcard < 0) {
+                files.add(Paths.get(pattern).normalize());
+                continue;
+            }
+            // Dossier de départ : la partie du motif qui précède le premier joker
+            int separator = pattern.lastIndexOf(File.separatorChar, wildcard);
+            if (separator < 0) separator = pattern.lastIndexOf('/', wildcard);
+            Path base = Paths.get(separator < 0 ? "." : pattern.substring(0, separator + 1));
+            String glob = separator < 0 ? "./" + pattern : pattern;
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+
+            // Sans **, le motif ne descend que d'autant de niveaux qu'il a de séparateurs après le dossier de départ
+            String rest = pattern.substring(separator + 1);
+            int depth = rest.contains("**") ? Integer.MAX_VALUE
+                    : 1 + (int) rest.chars().filter(c -> c == '/' || c == File.separatorChar).count();
+            try (Stream<Path> walk = Files.walk(base, depth)) {
+                walk.filter(Files::isRegularFile).filter(matcher::matches).map(Path::normalize).sorted()
+                        .forEach(files::add);
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Retourne la position du premier caractère joker d'un motif glob.
+     *
+     * @param pattern le motif
+     * @return l'indice du premier joker, ou -1 s'il n'y en a pas
+     */
+    private static int indexOfWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Affiche l'aide de la ligne de commande.
+     */
+    private static void printUsage() {
+        System.out.println("Usage : java BatchScrambler --mode MODE [-r R -s S] [-k K] -o DOSSIER [-j N] [--segments N] FICHIER_OU_GLOB...");
+        System.out.println("  --mode, -m  encrypt | decrypt | dynamic-encrypt | dynamic-decrypt | auto");
+        System.out.println("              (auto : clé recherchée au début de chaque segment, puis revalidée à chaque frame)");
+        System.out.println("  -r, -s      clé statique (modes encrypt et decrypt, défaut 3 et 7)");
+        System.out.println("  -k          graine (modes dynamiques, défaut 0)");
+        System.out.println("  --out, -o   dossier de sortie (fichiers .avi HuffYUV, arborescence des entrées conservée)");
+        System.out.println("  --jobs, -j  nombre de fichiers traités simultanément (défaut 1)");
+        System.out.println("  --segments  nombre de plages de frames d'un fichier traitées en parallèle (défaut : cœurs / jobs)");
+    }
+}
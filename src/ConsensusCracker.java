@@ -0,0 +1,177 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Recherche de la clé statique d'une vidéo par consensus : smartCrack est lancé en parallèle
+ * sur des frames échantillonnées dans toute la vidéo, et chaque résultat compte pour une voix.
+ * La recherche s'arrête dès qu'une clé devance la suivante d'une marge suffisante.
+ * Les frames unies sont ignorées, et les frames peu exploitables (fondus, flou) ne font
+ * que disperser leurs voix.
+ */
+public class ConsensusCracker {
+
+    /**
+     * Nombre maximal de frames échantillonnées par défaut.
+     */
+    public static final int DEFAULT_MAX_SAMPLES = 32;
+
+    /**
+     * Avance en voix sur la clé suivante nécessaire par défaut pour conclure.
+     */
+    public static final int DEFAULT_MARGIN = 3;
+
+    /**
+     * Écart-type pondéré (voir {@link Encryption#evaluateFrameForKeyFinding}) en dessous duquel
+     * une frame est trop uniforme pour voter : toutes les frames unies donneraient la même clé arbitraire.
+     */
+    private static final double MIN_FRAME_SCORE = 4.0;
+
+    private final String videoPath;
+    private final int maxSamples;
+    private final int margin;
+    private final int workers;
+
+    /**
+     * Construit un cracker par consensus.
+     *
+     * @param videoPath le chemin de la vidéo chiffrée (ouverte avec sa propre VideoCapture)
+     * @param maxSamples le nombre maximal de frames analysées
+     * @param margin l'avance en voix qu'une clé doit prendre sur la suivante pour conclure
+     * @param workers le nombre de frames analysées simultanément
+     */
+    public ConsensusCracker(String videoPath, int maxSamples, int margin, int workers) {
+        this.videoPath = videoPath;
+        this.maxSamples = Math.max(1, maxSamples);
+        this.margin = Math.max(1, margin);
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * Construit un cracker par consensus avec les réglages par défaut.
+     *
+     * @param videoPath le chemin de la vidéo chiffrée
+     */
+    public ConsensusCracker(String videoPath) {
+        this(videoPath, DEFAULT_MAX_SAMPLES, DEFAULT_MARGIN, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Lance la recherche.
+     *
+     * @param progress reçoit l'avancement (entre 0 et 1) en nombre de frames analysées
+     * @param cancelled interrogé entre deux frames : la recherche s'arrête s'il renvoie true
+     * @return la clé la plus votée (celle ayant atteint la marge, ou à défaut la première en tête
+     *         une fois toutes les frames analysées), ou null si la vidéo est illisible ou la recherche annulée
+     * @throws InterruptedException si le thread appelant est interrompu
+     * @throws ExecutionException si l'analyse d'une frame a échoué
+     */
+    public Key crack(DoubleConsumer progress, BooleanSupplier cancelled) throws InterruptedException, ExecutionException {
+        VideoCapture capture = new VideoCapture(videoPath);
+        if (!capture.isOpened()) {
+            System.err.println("Erreur: Impossible d'ouvrir la vidéo pour la recherche de clé.");
+            return null;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "consensus-cracker");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<Key> results = new ExecutorCompletionService<>(executor);
+
+        try {
+            int[] samples = sampleOrder((int) capture.get(Videoio.CAP_PROP_FRAME_COUNT), maxSamples);
+            Map<Key, Integer> votes = new HashMap<>();
+            Key leader = null;
+            int next = 0, submitted = 0, completed = 0;
+
+            while (true) {
+                if (cancelled.getAsBoolean()) return null;
+
+                // Au plus une frame en cours par thread : la mémoire reste bornée
+                while (next < samples.length && submitted - completed < workers) {
+                    capture.set(Videoio.CAP_PROP_POS_FRAMES, samples[next++]);
+                    Mat frame = new Mat();
+                    if (!capture.read(frame) || frame.empty()
+                            || Encryption.evaluateFrameForKeyFinding(frame) < MIN_FRAME_SCORE) {
+                        frame.release();
+                        continue;
+                    }
+                    results.submit(() -> {
+                        try {
+                            return Encryption.smartCrack(frame);
+                        } finally {
+                            frame.release();
+                        }
+                    });
+                    submitted++;
+                }
+                if (completed == submitted) break;
+
+                Key key = results.take().get();
+                completed++;
+                progress.accept((double) completed / samples.length);
+
+                int count = votes.merge(key, 1, Integer::sum);
+                if (leader == null || count > votes.get(leader)) leader = key;
+                if (votes.get(leader) - runnerUp(votes, leader) >= margin) break;
+            }
+            return leader;
+        } finally {
+            executor.shutdownNow();
+            capture.release();
+        }
+    }
+
+    /**
+     * Nombre de voix de la meilleure clé après la clé en tête.
+     *
+     * @param votes le décompte des voix
+     * @param leader la clé en tête
+     * @return le nombre de voix de la suivante (0 s'il n'y en a pas)
+     */
+    private static int runnerUp(Map<Key, Integer> votes, Key leader) {
+        int best = 0;
+        for (Map.Entry<Key, Integer> entry : votes.entrySet()) {
+            if (!entry.getKey().equals(leader)) best = Math.max(best, entry.getValue());
+        }
+        return best;
+    }
+
+    /**
+     * Indices des frames à analyser, répartis uniformément dans la vidéo puis ordonnés
+     * du plus grossier au plus fin (ordre bit-inversé) : les premières frames analysées
+     * couvrent déjà toute la durée, ce qui rend un arrêt précoce représentatif.
+     *
+     * @param totalFrames le nombre de frames de la vidéo
+     * @param maxSamples le nombre maximal de frames
+     * @return les indices des frames, dans l'ordre d'analyse
+     */
+    static int[] sampleOrder(int totalFrames, int maxSamples) {
+        int count = Math.max(1, Math.min(maxSamples, totalFrames));
+        int bits = 32 - Integer.numberOfLeadingZeros(count - 1);
+        int[] order = new int[count];
+        int filled = 0;
+        for (int i = 0; filled < count; i++) {
+            int j = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            if (j < count) {
+                // Centre de la j-ième tranche de la vidéo
+                order[filled++] = (int) ((j + 0.5) * Math.max(totalFrames, 1) / count);
+            }
+        }
+        return order;
+    }
+}
@@ -7,6 +7,8 @@ import org.opencv.core.Point;
 import org.opencv.imgproc.Imgproc;
 import javax.swing.text.Position;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 /**
  * Classe fournissant des méthodes de chiffrement et déchiffrement d'images
@@ -14,6 +16,26 @@ import java.util.*;
  */
 public class Encryption {
 
+    /**
+     * Nombre de positions (bits de clé) cachées dans une frame en mode dynamique.
+     */
+    private static final int DYNAMIC_KEY_BITS = 15;
+
+    /**
+     * Nombre maximal de jeux de positions conservés dans le cache.
+     */
+    private static final int POSITIONS_CACHE_SIZE = 16;
+
+    /**
+     * Cache LRU des positions du mode dynamique, indexé par (hauteur, largeur, k).
+     */
+    private static final Map<Long, int[]> POSITIONS_CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+            return size() > POSITIONS_CACHE_SIZE;
+        }
+    };
+
     /**
      * Génère une liste de positions aléatoires pour le chiffrement dynamique.
      *
@@ -23,23 +45,87 @@ public class Encryption {
      * @return une liste de 15 positions aléatoires uniques
      */
     public static ArrayList<Point> getPositionsForDynamicEncryption(int height, int width, int k) {
-        SplittableRandom random = new SplittableRandom(k);
         ArrayList<Point> positions = new ArrayList<>();
+        for (int offset : dynamicPositions(height, width, k)) {
+            positions.add(new Point(offset % width, offset / width));
+        }
+        return positions;
+    }
+
+    /**
+     * Positions du mode dynamique sous forme d'indices de pixel (ligne * largeur + colonne),
+     * dans le même ordre que {@link #getPositionsForDynamicEncryption}. Le résultat est mémorisé
+     * par (hauteur, largeur, k) : le tableau renvoyé est partagé et ne doit pas être modifié.
+     *
+     * @param height la hauteur de l'image
+     * @param width la largeur de l'image
+     * @param k la graine pour le générateur de nombres aléatoires
+     * @return les 15 indices de pixel
+     */
+    private static int[] dynamicPositions(int height, int width, int k) {
+        if (height >= 1 << 16 || width >= 1 << 16) return generatePositions(height, width, k);
+
+        long cacheKey = ((long) height << 48) | ((long) width << 32) | (k & 0xFFFFFFFFL);
+        synchronized (POSITIONS_CACHE) {
+            int[] positions = POSITIONS_CACHE.get(cacheKey);
+            if (positions == null) {
+                positions = generatePositions(height, width, k);
+                POSITIONS_CACHE.put(cacheKey, positions);
+            }
+            return positions;
+        }
+    }
+
+    /**
+     * Tire les positions du mode dynamique. La suite de tirages est exactement celle de la version
+     * d'origine (un tirage x puis y, retiré tant que la position est déjà prise) ; les doublons
+     * sont détectés en O(1) dans une petite table de hachage d'entiers.
+     *
+     * @param height la hauteur de l'image
+     * @param width la largeur de l'image
+     * @param k la graine pour le générateur de nombres aléatoires
+     * @return les 15 indices de pixel
+     */
+    private static int[] generatePositions(int height, int width, int k) {
+        SplittableRandom random = new SplittableRandom(k);
+        int[] positions = new int[DYNAMIC_KEY_BITS];
+
+        // Adressage ouvert, -1 pour une case vide ; table au moins deux fois plus grande que le contenu
+        int[] taken = new int[32];
+        Arrays.fill(taken, -1);
 
         int x = random.nextInt(width);
         int y = random.nextInt(height);
 
-        while (positions.size() < 15) {
-            while (positions.contains(new Point(x, y))) {
+        for (int count = 0; count < DYNAMIC_KEY_BITS; count++) {
+            int slot;
+            while (taken[slot = findSlot(taken, y * width + x)] >= 0) {
                 x = random.nextInt(width);
                 y = random.nextInt(height);
             }
-            positions.add(new Point(x, y));
+            taken[slot] = y * width + x;
+            positions[count] = y * width + x;
         }
 
         return positions;
     }
 
+    /**
+     * Cherche la case d'un indice de pixel dans une table à adressage ouvert.
+     *
+     * @param table la table (taille puissance de 2, -1 pour une case vide)
+     * @param value l'indice de pixel
+     * @return la case qui contient la valeur, ou la case vide où l'insérer
+     */
+    private static int findSlot(int[] table, int value) {
+        int mask = table.length - 1;
+        int slot = ((value * 0x9E3779B9) >>> 27) & mask;
+        while (table[slot] >= 0 && table[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
     /**
      * Calcule la plus grande puissance de 2 inférieure ou égale à n.
      *
@@ -56,6 +142,36 @@ public class Encryption {
         return power;
     }
 
+    /**
+     * Nombre de paires de lignes comparées pour départager la clé cachée et la clé de la suite
+     * lorsqu'elles diffèrent.
+     */
+    private static final int CHECK_PAIRS = 32;
+
+    /**
+     * Taille de ligne (en octets) à partir de laquelle les lignes sont copiées directement
+     * entre Mat natives. En dessous, le coût fixe d'une copie native par ligne dépasse
+     * celui d'un aller-retour de la frame dans le tas Java.
+     */
+    private static final int NATIVE_ROW_THRESHOLD = Integer.getInteger("videoscrambler.nativeRowThreshold", 8192);
+
+    /**
+     * Tampons de travail propres à chaque thread, utilisés pour les frames aux lignes étroites.
+     */
+    private static final ThreadLocal<ScratchBuffers> POOLED_BUFFERS = ThreadLocal.withInitial(ScratchBuffers::new);
+
+    /**
+     * Tampons de lignes de la vérification de clé du mode dynamique, un couple par thread : une vidéo
+     * réencodée avec perte fait échouer la somme de contrôle à chaque frame.
+     */
+    private static final ThreadLocal<byte[][]> CHECK_ROWS = ThreadLocal.withInitial(() -> new byte[2][0]);
+
+    /**
+     * Sommes du coefficient de Pearson renvoyées par les noyaux, un tableau par thread :
+     * pearsonFast est appelé pour chaque paire de lignes comparée.
+     */
+    private static final ThreadLocal<long[]> PEARSON_SUMS = ThreadLocal.withInitial(() -> new long[5]);
+
     /**
      * Chiffre une image en permutant les lignes selon les paramètres r et s.
      *
@@ -65,45 +181,46 @@ public class Encryption {
      * @return l'image chiffrée
      */
     public static Mat encrypt(Mat input, int r, int s) {
-        int height = input.rows();
-        int width = input.cols();
-        int channels = input.channels();
-
-        int rowSize = width * channels;
-        int totalSize = height * rowSize;
-        byte[] sourceData = new byte[totalSize];
-        byte[] destData = new byte[totalSize];
-
-        input.get(0, 0, sourceData);
-
-        int step = 2 * s + 1;
-        int startLine = 0;
-
-        int remainingLines, blockSize, blockMask, destIndexInBlock, sourceRow, destRow;
-
-        while (startLine < height) {
-            remainingLines = height - startLine;
-            blockSize = largestPowerOf2(remainingLines);
-
-            blockMask = blockSize - 1;
-
-            for (int i = 0; i < blockSize; i++) {
-                destIndexInBlock = (r + step * i) & blockMask;
-
-                sourceRow = startLine + i;
-                destRow = startLine + destIndexInBlock;
+        Mat output = new Mat();
+        encrypt(input, output, r, s);
+        return output;
+    }
 
-                System.arraycopy(sourceData, sourceRow * rowSize,
-                        destData, destRow * rowSize,
-                        rowSize);
-            }
-            startLine += blockSize;
+    /**
+     * Chiffre une image dans une Mat de destination fournie.
+     * Les lignes larges sont copiées directement de mémoire native à mémoire native,
+     * sans copie intermédiaire de la frame dans le tas Java ; les lignes étroites
+     * passent par les tampons du thread courant.
+     *
+     * @param input l'image d'entrée à chiffrer
+     * @param output la Mat recevant l'image chiffrée (distincte de input, réallouée seulement si nécessaire)
+     * @param r le paramètre r de la clé de chiffrement (0-255)
+     * @param s le paramètre s de la clé de chiffrement (0-127)
+     */
+    public static void encrypt(Mat input, Mat output, int r, int s) {
+        if (input.cols() * input.channels() < NATIVE_ROW_THRESHOLD) {
+            encrypt(input, output, r, s, POOLED_BUFFERS.get());
+            return;
         }
+        checkDistinct(input, output);
+        output.create(input.rows(), input.cols(), input.type());
+        RowPermutation.of(input.rows(), r, s).encrypt(input, output);
+    }
 
-        Mat output = new Mat(height, width, input.type());
-        output.put(0, 0, destData);
-
-        return output;
+    /**
+     * Chiffre une image dans une Mat de destination avec des tampons fournis par l'appelant.
+     * Aucune allocation n'est faite si output et scratch ont déjà la bonne taille.
+     *
+     * @param input l'image d'entrée à chiffrer
+     * @param output la Mat recevant l'image chiffrée (distincte de input)
+     * @param r le paramètre r de la clé de chiffrement (0-255)
+     * @param s le paramètre s de la clé de chiffrement (0-127)
+     * @param scratch les tampons de travail
+     */
+    public static void encrypt(Mat input, Mat output, int r, int s, ScratchBuffers scratch) {
+        int rowSize = loadScratch(input, output, scratch);
+        RowPermutation.of(input.rows(), r, s).encrypt(scratch.source(), scratch.dest(), rowSize);
+        storeScratch(input, output, scratch);
     }
 
     /**
@@ -115,148 +232,412 @@ public class Encryption {
      * @return l'image déchiffrée
      */
     public static Mat decrypt(Mat input, int r, int s) {
-        int height = input.rows();
-        int width = input.cols();
-        int channels = input.channels();
-
-        int rowSize = width * channels;
-        int totalSize = height * rowSize;
-        byte[] sourceData = new byte[totalSize];
-        byte[] destData = new byte[totalSize];
-
-        input.get(0, 0, sourceData);
-
-        int step = 2 * s + 1;
-        int startLine = 0;
+        Mat output = new Mat();
+        decrypt(input, output, r, s);
+        return output;
+    }
 
-        int remainingLines, blockSize, blockMask, sourceIndexInBlock, sourceRow, destRow;
+    /**
+     * Déchiffre une image dans une Mat de destination fournie.
+     * Les lignes larges sont copiées directement de mémoire native à mémoire native,
+     * sans copie intermédiaire de la frame dans le tas Java ; les lignes étroites
+     * passent par les tampons du thread courant.
+     *
+     * @param input l'image chiffrée
+     * @param output la Mat recevant l'image déchiffrée (distincte de input, réallouée seulement si nécessaire)
+     * @param r le paramètre r de la clé de déchiffrement (0-255)
+     * @param s le paramètre s de la clé de déchiffrement (0-127)
+     */
+    public static void decrypt(Mat input, Mat output, int r, int s) {
+        if (input.cols() * input.channels() < NATIVE_ROW_THRESHOLD) {
+            decrypt(input, output, r, s, POOLED_BUFFERS.get());
+            return;
+        }
+        checkDistinct(input, output);
+        output.create(input.rows(), input.cols(), input.type());
+        RowPermutation.of(input.rows(), r, s).decrypt(input, output);
+    }
 
-        while (startLine < height) {
-            remainingLines = height - startLine;
-            blockSize = largestPowerOf2(remainingLines);
-            blockMask = blockSize - 1;
+    /**
+     * Déchiffre une image dans une Mat de destination avec des tampons fournis par l'appelant.
+     * Aucune allocation n'est faite si output et scratch ont déjà la bonne taille.
+     *
+     * @param input l'image chiffrée
+     * @param output la Mat recevant l'image déchiffrée (distincte de input)
+     * @param r le paramètre r de la clé de déchiffrement (0-255)
+     * @param s le paramètre s de la clé de déchiffrement (0-127)
+     * @param scratch les tampons de travail
+     */
+    public static void decrypt(Mat input, Mat output, int r, int s, ScratchBuffers scratch) {
+        int rowSize = loadScratch(input, output, scratch);
+        // Le plan donne, pour chaque ligne originale, la ligne chiffrée où elle se trouve
+        RowPermutation.of(input.rows(), r, s).decrypt(scratch.source(), scratch.dest(), rowSize);
+        storeScratch(input, output, scratch);
+    }
 
-            for (int i = 0; i < blockSize; i++) {
-                // Calcul inverse : on trouve où était la ligne source
-                sourceIndexInBlock = (r + step * i) & blockMask;
+    /**
+     * Copie une frame dans le tampon source (une seule copie native vers le tas).
+     *
+     * @param input la frame
+     * @param output la Mat de destination prévue (doit être distincte de input)
+     * @param scratch les tampons de travail
+     * @return la taille d'une ligne en octets
+     */
+    private static int loadScratch(Mat input, Mat output, ScratchBuffers scratch) {
+        checkDistinct(input, output);
+        int rowSize = input.cols() * input.channels();
+        scratch.ensureSize(input.rows() * rowSize);
+        input.get(0, 0, scratch.source());
+        return rowSize;
+    }
 
-                sourceRow = startLine + sourceIndexInBlock; // Ligne chiffrée
-                destRow = startLine + i;                    // Ligne originale
+    /**
+     * Copie le tampon destination dans la Mat de sortie (une seule copie du tas vers le natif).
+     *
+     * @param input la frame d'origine (pour les dimensions et le type)
+     * @param output la Mat de sortie, réallouée seulement si nécessaire
+     * @param scratch les tampons de travail
+     */
+    private static void storeScratch(Mat input, Mat output, ScratchBuffers scratch) {
+        output.create(input.rows(), input.cols(), input.type());
+        output.put(0, 0, scratch.dest());
+    }
 
-                System.arraycopy(sourceData, sourceRow * rowSize,
-                        destData, destRow * rowSize,
-                        rowSize);
-            }
-            startLine += blockSize;
+    /**
+     * Vérifie que la Mat de destination ne partage pas ses données avec la Mat source,
+     * la permutation ne pouvant pas être faite sur place.
+     *
+     * @param input la Mat source
+     * @param output la Mat destination
+     */
+    private static void checkDistinct(Mat input, Mat output) {
+        if (input == output || (!output.empty() && input.dataAddr() == output.dataAddr())) {
+            throw new IllegalArgumentException("La Mat de destination doit être distincte de la Mat source");
         }
-
-        Mat output = new Mat(height, width, input.type());
-        output.put(0, 0, destData);
-
-        return output;
     }
 
     /**
      * Chiffre dynamiquement une image en cachant la clé dans les pixels via stéganographie LSB.
+     * Comme dans les versions antérieures, la clé est tirée au hasard à chaque appel : elle ne peut être
+     * retrouvée que par la clé cachée, sans la vérification de la suite de clés.
      *
      * @param input l'image d'entrée
      * @param k la graine pour générer les positions de cachage de la clé
      * @return l'image chiffrée avec la clé cachée
+     * @deprecated le numéro de frame est nécessaire pour tirer la clé de la suite de clés :
+     *             utiliser {@link #dynamicEncrypt(Mat, Mat, int, long)}
      */
+    @Deprecated
     public static Mat dynamicEncrypt(Mat input, int k) {
-        int height = input.rows();
-        int width = input.cols();
-        ArrayList<Point> positions = getPositionsForDynamicEncryption(height, width, k);
-
-        Random random = new Random();
-        int r = random.nextInt(256);
-        int s = random.nextInt(128);
+        Mat output = new Mat();
+        dynamicEncrypt(input, output, k);
+        return output;
+    }
 
-        Mat encrypted = encrypt(input, r, s);
+    /**
+     * Chiffre dynamiquement une image dans une Mat de destination fournie, avec une clé tirée au hasard
+     * comme dans les versions antérieures.
+     *
+     * @param input l'image d'entrée
+     * @param encrypted la Mat recevant l'image chiffrée avec la clé cachée (distincte de input)
+     * @param k la graine pour générer les positions de cachage de la clé
+     * @deprecated le numéro de frame est nécessaire pour tirer la clé de la suite de clés :
+     *             utiliser {@link #dynamicEncrypt(Mat, Mat, int, long)}
+     */
+    @Deprecated
+    public static void dynamicEncrypt(Mat input, Mat encrypted, int k) {
+        encryptWithHiddenKey(input, encrypted, k, ThreadLocalRandom.current().nextInt(1 << DYNAMIC_KEY_BITS));
+    }
 
-        boolean[] keyBits = new boolean[15];
+    /**
+     * Chiffre dynamiquement une frame d'une vidéo. Sa clé est tirée de la suite déterministe
+     * (k, numéro de frame) : le résultat est reproductible et chaque frame peut être chiffrée
+     * indépendamment des autres. La clé est aussi cachée dans les pixels, où elle sert de somme
+     * de contrôle et reste lisible par les versions antérieures.
+     *
+     * @param input la frame d'entrée
+     * @param encrypted la Mat recevant la frame chiffrée avec la clé cachée (distincte de input)
+     * @param k la graine du mode dynamique (positions de cachage et suite de clés)
+     * @param frameIndex le numéro de la frame dans la vidéo
+     */
+    public static void dynamicEncrypt(Mat input, Mat encrypted, int k, long frameIndex) {
+        encryptWithHiddenKey(input, encrypted, k, KeySchedule.keyBitsFor(k, frameIndex));
+    }
 
-        for (int i = 0; i < 8; i++) {
-            keyBits[i] = ((r >> i) & 1) == 1;
-        }
-        for (int i = 0; i < 7; i++) {
-            keyBits[8 + i] = ((s >> i) & 1) == 1;
+    /**
+     * Chiffre une frame avec la clé donnée et cache cette clé dans ses pixels.
+     *
+     * @param input la frame d'entrée
+     * @param encrypted la Mat recevant la frame chiffrée avec la clé cachée (distincte de input)
+     * @param k la graine des positions de cachage
+     * @param keyBits les bits de la clé (bits 0-7 : r, bits 8-14 : s), un bit par position
+     */
+    private static void encryptWithHiddenKey(Mat input, Mat encrypted, int k, int keyBits) {
+        int height = input.rows();
+        int width = input.cols();
+        int[] positions = dynamicPositions(height, width, k);
+
+        int r = keyBits & 0xFF;
+        int s = keyBits >> 8;
+
+        if (width * input.channels() < NATIVE_ROW_THRESHOLD) {
+            // Les LSB sont écrits dans le tampon permuté, avant l'unique copie vers la Mat
+            ScratchBuffers scratch = POOLED_BUFFERS.get();
+            int rowSize = loadScratch(input, encrypted, scratch);
+            RowPermutation.of(height, r, s).encrypt(scratch.source(), scratch.dest(), rowSize);
+            embedKeyBits(scratch.dest(), positions, input.channels(), keyBits);
+            storeScratch(input, encrypted, scratch);
+        } else {
+            encrypt(input, encrypted, r, s);
+            embedKeyBits(encrypted, positions, width, keyBits);
         }
+    }
 
-        for (int i = 0; i < 15; i++) {
-            Point p = positions.get(i);
-            int row = (int) p.y;
-            int col = (int) p.x;
-            boolean bitToHide = keyBits[i];
-
-            // Lire le pixel
-            double[] pixel = encrypted.get(row, col);
-
-            // On ne modifie qu'un seul canal
-            int channelIndex = 0;
+    /**
+     * Déchiffre une image dynamiquement en extrayant la clé cachée des pixels.
+     *
+     * @param input l'image chiffrée avec clé cachée
+     * @param k la graine pour localiser les positions de la clé cachée
+     * @return l'image déchiffrée
+     */
+    public static Mat dynamicDecrypt(Mat input, int k) {
+        Mat output = new Mat();
+        dynamicDecrypt(input, output, k);
+        return output;
+    }
 
-            // Extraire la valeur entière du canal (0-255)
-            int channelValue = (int) pixel[channelIndex];
+    /**
+     * Déchiffre dynamiquement une image dans une Mat de destination fournie. Son numéro de frame
+     * étant inconnu, elle est déchiffrée avec la clé cachée dans ses pixels.
+     *
+     * @param input l'image chiffrée avec clé cachée
+     * @param decrypted la Mat recevant l'image déchiffrée (distincte de input)
+     * @param k la graine pour localiser les positions de la clé cachée
+     */
+    public static void dynamicDecrypt(Mat input, Mat decrypted, int k) {
+        decryptWithHiddenKey(input, decrypted, k);
+    }
 
-            // Mise à jour de l'LSB :
-            // 1. channelValue & 0xFE : Met le LSB à zéro.
-            // 2. | (bitToHide ? 1 : 0) : Ajoute le bit de la clé.
-            int newValue = (channelValue & 0xFE) | (bitToHide ? 1 : 0);
+    /**
+     * Déchiffre dynamiquement une frame d'une vidéo avec la clé de la suite déterministe pour ce numéro
+     * de frame ({@link KeySchedule}) : la frame peut être déchiffrée seule, dans n'importe quel ordre.
+     * La clé cachée dans les pixels sert de somme de contrôle. Si elle diffère, la clé qui donne l'image
+     * la plus cohérente est retenue : la clé de la suite si les LSB ont été altérés, la clé cachée pour
+     * une vidéo produite par une version antérieure (clé aléatoire à chaque frame).
+     *
+     * @param input la frame chiffrée avec clé cachée
+     * @param decrypted la Mat recevant la frame déchiffrée (distincte de input)
+     * @param k la graine du mode dynamique
+     * @param frameIndex le numéro de la frame dans la vidéo
+     * @return le résultat de la vérification, qui indique aussi la clé utilisée
+     */
+    public static KeyCheck dynamicDecrypt(Mat input, Mat decrypted, int k, long frameIndex) {
+        int height = input.rows();
+        int width = input.cols();
+        int[] positions = dynamicPositions(height, width, k);
+        int scheduled = KeySchedule.keyBitsFor(k, frameIndex);
+
+        KeyCheck check;
+        if (width * input.channels() < NATIVE_ROW_THRESHOLD) {
+            // Les LSB sont lus dans le tampon source, déjà chargé pour la permutation
+            ScratchBuffers scratch = POOLED_BUFFERS.get();
+            int rowSize = loadScratch(input, decrypted, scratch);
+            int hidden = extractKeyBits(scratch.source(), positions, input.channels());
+            check = checkKey(input, hidden, scheduled);
+            int keyBits = check == KeyCheck.LEGACY ? hidden : scheduled;
+            RowPermutation.of(height, keyBits & 0xFF, keyBits >> 8).decrypt(scratch.source(), scratch.dest(), rowSize);
+            storeScratch(input, decrypted, scratch);
+        } else {
+            int hidden = extractKeyBits(input, positions, width);
+            check = checkKey(input, hidden, scheduled);
+            int keyBits = check == KeyCheck.LEGACY ? hidden : scheduled;
+            decrypt(input, decrypted, keyBits & 0xFF, keyBits >> 8);
+        }
+        return check;
+    }
 
-            // Réinjecter la nouvelle valeur dans le pixel
-            pixel[channelIndex] = newValue;
+    /**
+     * Vérifie la clé d'une frame chiffrée dynamiquement, sans la déchiffrer
+     * (même résultat que {@link #dynamicDecrypt(Mat, Mat, int, long)}).
+     *
+     * @param input la frame chiffrée avec clé cachée
+     * @param k la graine du mode dynamique
+     * @param frameIndex le numéro de la frame dans la vidéo
+     * @return le résultat de la vérification
+     */
+    public static KeyCheck checkDynamicKey(Mat input, int k, long frameIndex) {
+        int[] positions = dynamicPositions(input.rows(), input.cols(), k);
+        int hidden = extractKeyBits(input, positions, input.cols());
+        return checkKey(input, hidden, KeySchedule.keyBitsFor(k, frameIndex));
+    }
 
-            // Mettre à jour la Mat
-            encrypted.put(row, col, pixel);
+    /**
+     * Compare la clé cachée d'une frame à celle de la suite. En cas de désaccord, la clé dont les lignes
+     * voisines dans l'image claire sont les plus proches dans la frame chiffrée est jugée la bonne.
+     *
+     * @param input la frame chiffrée
+     * @param hidden les bits de la clé cachée
+     * @param scheduled les bits de la clé de la suite
+     * @return le résultat de la vérification
+     */
+    private static KeyCheck checkKey(Mat input, int hidden, int scheduled) {
+        if (hidden == scheduled) return KeyCheck.VERIFIED;
+        int rowSize = input.cols() * input.channels();
+        byte[][] rows = CHECK_ROWS.get();
+        if (rows[0].length != rowSize) {
+            rows[0] = new byte[rowSize];
+            rows[1] = new byte[rowSize];
         }
+        byte[] rowA = rows[0];
+        byte[] rowB = rows[1];
+        return keyContinuity(input, hidden, rowA, rowB) < keyContinuity(input, scheduled, rowA, rowB)
+                ? KeyCheck.LEGACY : KeyCheck.CORRUPTED_CHECKSUM;
+    }
 
-        return encrypted;
+    /**
+     * Somme des distances entre quelques paires de lignes qui seraient voisines dans l'image claire
+     * avec la clé donnée, dans le premier bloc de la frame chiffrée. Plus elle est faible, plus la clé
+     * est vraisemblable.
+     *
+     * @param frame la frame chiffrée
+     * @param keyBits les bits de la clé (bits 0-7 : r, bits 8-14 : s)
+     * @param rowA tampon pour la première ligne
+     * @param rowB tampon pour la seconde ligne
+     * @return la somme des différences absolues des paires échantillonnées
+     */
+    private static long keyContinuity(Mat frame, int keyBits, byte[] rowA, byte[] rowB) {
+        int blockSize = largestPowerOf2(frame.rows());
+        int blockMask = blockSize - 1;
+        int r = keyBits & 0xFF;
+        int step = 2 * (keyBits >> 8) + 1;
+        int pairs = Math.min(CHECK_PAIRS, blockSize - 1);
+
+        long sum = 0;
+        for (int j = 0; j < pairs; j++) {
+            int i = (int) ((long) j * (blockSize - 1) / pairs);
+            frame.get((r + step * i) & blockMask, 0, rowA);
+            frame.get((r + step * (i + 1)) & blockMask, 0, rowB);
+            sum += RowKernels.INSTANCE.sumAbsDiff(rowA, 0, rowB, 0, rowA.length);
+        }
+        return sum;
     }
 
     /**
-     * Déchiffre une image dynamiquement en extrayant la clé cachée des pixels.
+     * Lit la clé cachée dans une frame et déchiffre la frame avec cette clé.
      *
-     * @param input l'image chiffrée avec clé cachée
+     * @param input la frame chiffrée avec clé cachée
+     * @param decrypted la Mat recevant la frame déchiffrée (distincte de input)
      * @param k la graine pour localiser les positions de la clé cachée
-     * @return l'image déchiffrée
+     * @return les bits de la clé lue (bits 0-7 : r, bits 8-14 : s)
      */
-    public static Mat dynamicDecrypt(Mat input, int k) {
+    private static int decryptWithHiddenKey(Mat input, Mat decrypted, int k) {
         int height = input.rows();
         int width = input.cols();
-        ArrayList<Point> positions = getPositionsForDynamicEncryption(height, width, k);
-
-        boolean[] keyBits = new boolean[15];
-
-        for (int i = 0; i < 15; i++) {
-            Point p = positions.get(i);
-            int row = (int) p.y;
-            int col = (int) p.x;
+        int[] positions = dynamicPositions(height, width, k);
+
+        int keyBits;
+        if (width * input.channels() < NATIVE_ROW_THRESHOLD) {
+            // Les LSB sont lus dans le tampon source, déjà chargé pour la permutation
+            ScratchBuffers scratch = POOLED_BUFFERS.get();
+            int rowSize = loadScratch(input, decrypted, scratch);
+            keyBits = extractKeyBits(scratch.source(), positions, input.channels());
+            RowPermutation.of(height, keyBits & 0xFF, keyBits >> 8).decrypt(scratch.source(), scratch.dest(), rowSize);
+            storeScratch(input, decrypted, scratch);
+        } else {
+            keyBits = extractKeyBits(input, positions, width);
+            decrypt(input, decrypted, keyBits & 0xFF, keyBits >> 8);
+        }
+        return keyBits;
+    }
 
-            double[] pixel = input.get(row, col);
-            int channelIndex = 0;
-            int channelValue = (int) pixel[channelIndex];
+    /**
+     * Cache les bits de la clé dans le LSB du premier canal des pixels désignés, dans une frame
+     * chargée dans le tas : le bit i de keyBits va dans le pixel positions[i].
+     *
+     * @param data les pixels de la frame
+     * @param positions les indices de pixel (ligne * largeur + colonne)
+     * @param channels le nombre de canaux
+     * @param keyBits les bits à cacher
+     */
+    private static void embedKeyBits(byte[] data, int[] positions, int channels, int keyBits) {
+        for (int i = 0; i < positions.length; i++) {
+            int offset = positions[i] * channels;
+            data[offset] = (byte) ((data[offset] & 0xFE) | ((keyBits >> i) & 1));
+        }
+    }
 
-            // Extraire le LSB
-            keyBits[i] = (channelValue & 1) == 1;
+    /**
+     * Lit les bits de la clé dans le LSB du premier canal des pixels désignés, dans une frame
+     * chargée dans le tas.
+     *
+     * @param data les pixels de la frame
+     * @param positions les indices de pixel (ligne * largeur + colonne)
+     * @param channels le nombre de canaux
+     * @return les bits lus, le bit i venant du pixel positions[i]
+     */
+    private static int extractKeyBits(byte[] data, int[] positions, int channels) {
+        int keyBits = 0;
+        for (int i = 0; i < positions.length; i++) {
+            keyBits |= (data[positions[i] * channels] & 1) << i;
         }
+        return keyBits;
+    }
 
-        int r = 0;
-        for (int i = 0; i < 8; i++) {
-            if (keyBits[i]) {
-                r |= (1 << i);
+    /**
+     * Cache les bits de la clé directement dans une Mat, pour les frames aux lignes larges
+     * qui ne passent pas par le tas : les octets sont écrits dans les données natives de la frame
+     * (voir {@link NativeMemory}), ou à défaut un pixel lu et écrit par position.
+     *
+     * @param mat la frame
+     * @param positions les indices de pixel (ligne * largeur + colonne)
+     * @param width la largeur de la frame
+     * @param keyBits les bits à cacher
+     */
+    private static void embedKeyBits(Mat mat, int[] positions, int width, int keyBits) {
+        if (NativeMemory.isUsable(mat)) {
+            long data = mat.dataAddr();
+            int channels = mat.channels();
+            for (int i = 0; i < positions.length; i++) {
+                long address = data + (long) positions[i] * channels;
+                NativeMemory.putByte(address, (byte) ((NativeMemory.getByte(address) & 0xFE) | ((keyBits >> i) & 1)));
             }
+            return;
         }
+        byte[] pixel = new byte[mat.channels()];
+        for (int i = 0; i < positions.length; i++) {
+            int row = positions[i] / width;
+            int col = positions[i] % width;
+            mat.get(row, col, pixel);
+            pixel[0] = (byte) ((pixel[0] & 0xFE) | ((keyBits >> i) & 1));
+            mat.put(row, col, pixel);
+        }
+    }
 
-        int s = 0;
-        for (int i = 0; i < 7; i++) {
-            if (keyBits[8 + i]) {
-                s |= (1 << i);
+    /**
+     * Lit les bits de la clé directement dans une Mat, pour les frames aux lignes larges :
+     * dans ses données natives si possible, sinon un pixel par position.
+     *
+     * @param mat la frame
+     * @param positions les indices de pixel (ligne * largeur + colonne)
+     * @param width la largeur de la frame
+     * @return les bits lus, le bit i venant du pixel positions[i]
+     */
+    private static int extractKeyBits(Mat mat, int[] positions, int width) {
+        int keyBits = 0;
+        if (NativeMemory.isUsable(mat)) {
+            long data = mat.dataAddr();
+            int channels = mat.channels();
+            for (int i = 0; i < positions.length; i++) {
+                keyBits |= (NativeMemory.getByte(data + (long) positions[i] * channels) & 1) << i;
             }
+            return keyBits;
         }
-
-        Mat decrypted = decrypt(input, r, s);
-
-        return decrypted;
+        byte[] pixel = new byte[mat.channels()];
+        for (int i = 0; i < positions.length; i++) {
+            mat.get(positions[i] / width, positions[i] % width, pixel);
+            keyBits |= (pixel[0] & 1) << i;
+        }
+        return keyBits;
     }
 
     /**
@@ -306,17 +687,28 @@ public class Encryption {
         double sumX2 = 0, sumY2 = 0;
         double sumXY = 0;
 
-        int xi, yi;
-
-        for (int i = 0; i < length; i+=step) {
-            xi = data[r1 * length + i] & 0xFF;
-            yi = data[r2 * length + i] & 0xFF;
-
-            sumX += xi;
-            sumY += yi;
-            sumX2 += xi * xi;
-            sumY2 += yi * yi;
-            sumXY += xi * yi;
+        if (step == 1) {
+            // Lignes contiguës : noyau vectorisé, sommes entières donc identiques à la boucle
+            long[] sums = PEARSON_SUMS.get();
+            RowKernels.INSTANCE.pearsonSums(data, r1 * length, data, r2 * length, length, sums);
+            sumX = sums[0];
+            sumY = sums[1];
+            sumX2 = sums[2];
+            sumY2 = sums[3];
+            sumXY = sums[4];
+        } else {
+            int xi, yi;
+
+            for (int i = 0; i < length; i+=step) {
+                xi = data[r1 * length + i] & 0xFF;
+                yi = data[r2 * length + i] & 0xFF;
+
+                sumX += xi;
+                sumY += yi;
+                sumX2 += xi * xi;
+                sumY2 += yi * yi;
+                sumXY += xi * yi;
+            }
         }
 
         double numerator = length * sumXY - sumX * sumY;
@@ -359,14 +751,62 @@ public class Encryption {
      * @return la distance euclidienne négative
      */
     public static double euclideanDistanceFast(byte[] data, int r1, int r2, int length, double step) {
+        if (step == 1.0) {
+            return -RowKernels.INSTANCE.sumAbsDiff(data, r1 * length, data, r2 * length, length);
+        }
+        int[] columns = sampledColumns(length, step);
+        int offset1 = r1 * length;
+        int offset2 = r2 * length;
         long sumSq = 0;
-        for (double di = 0; di < length; di+=step) {
-            int i = (int) di;
-            sumSq += Math.abs((data[r1 * length + i] & 0xFF) - (data[r2 * length + i] & 0xFF));
+        for (int i : columns) {
+            sumSq += Math.abs((data[offset1 + i] & 0xFF) - (data[offset2 + i] & 0xFF));
         }
         return -sumSq;
     }
 
+    /**
+     * Dernière table de colonnes échantillonnées, partagée entre les threads.
+     */
+    private static volatile SampledColumns lastSampledColumns;
+
+    /**
+     * Retourne les colonnes lues par un échantillonnage de pas fractionnaire, calculées une seule fois
+     * avec le même compteur double que l'échantillonnage d'origine : les colonnes sont donc exactement
+     * les mêmes, sans conversion double vers int à chaque paire de lignes.
+     *
+     * @param length la longueur d'une ligne
+     * @param step le pas d'échantillonnage
+     * @return les indices des colonnes échantillonnées
+     */
+    private static int[] sampledColumns(int length, double step) {
+        SampledColumns cached = lastSampledColumns;
+        if (cached != null && cached.length == length && cached.step == step) return cached.columns;
+
+        int count = 0;
+        for (double di = 0; di < length; di += step) count++;
+        int[] columns = new int[count];
+        int c = 0;
+        for (double di = 0; di < length; di += step) columns[c++] = (int) di;
+
+        lastSampledColumns = new SampledColumns(length, step, columns);
+        return columns;
+    }
+
+    /**
+     * Table immuable des colonnes échantillonnées pour une longueur et un pas donnés.
+     */
+    private static final class SampledColumns {
+        final int length;
+        final double step;
+        final int[] columns;
+
+        SampledColumns(int length, double step, int[] columns) {
+            this.length = length;
+            this.step = step;
+            this.columns = columns;
+        }
+    }
+
     /**
      * Évalue la qualité d'une image pour la recherche de clé en calculant l'écart-type pondéré.
      *
@@ -381,7 +821,17 @@ public class Encryption {
     }
 
     /**
-     * Craque la clé de chiffrement par force brute en testant toutes les combinaisons.
+     * Nombre de candidats s, classés sur les signatures de lignes, dont le score est
+     * confirmé sur les lignes complètes par bruteForceCrack.
+     */
+    private static final int CONFIRMED_CANDIDATES = 4;
+
+    /**
+     * Craque la clé de chiffrement par force brute : cherche d'abord s (avec r = 0),
+     * puis r avec le s trouvé. Les 128 candidats s sont classés en parallèle sur des signatures
+     * de lignes compactes (voir {@link RowSignatures}), puis les meilleurs sont départagés
+     * sur les lignes complètes ; les 256 candidats r sont déduits d'une seule table de distances
+     * (voir {@link #rScores}).
      *
      * @param image l'image chiffrée
      * @return la clé trouvée (r, s)
@@ -389,49 +839,212 @@ public class Encryption {
     public static Key bruteForceCrack(Mat image){
         int N = largestPowerOf2(image.rows());
         int width = image.cols();
-        byte[] imageData = new byte[N * width];
-        Mat bwImage = new Mat();
-        Imgproc.cvtColor(image, bwImage, Imgproc.COLOR_BGR2GRAY);
-        bwImage.get(0, 0, imageData);
+        Mat gray = new Mat();
+        Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
+        byte[] imageData = grayBlock(gray, N);
+        RowSignatures signatures = RowSignatures.of(gray, N, RowSignatures.DEFAULT_WIDTH);
+        gray.release();
 
-        Key bestKey = new Key(0,0);
-        double bestScore = Double.NEGATIVE_INFINITY;
-        double score;
-        int[] destIndexInBlockArr = new int[N];
         int mask = N -1;
         double pearsonStep = Math.max( 1.0, (double) width/480.0);
-        int steps;
+        byte[] sampledData = sampledBlock(imageData, N, width, pearsonStep);
+        int sampledWidth = sampledData.length / N;
 
-        for(int s = 0; s < 128; s++){
-            steps = 2*s +1;
-            for(int i = 0; i < N; i++){
-                destIndexInBlockArr[i] = (bestKey.r + steps * i) & mask;
-            }
-            score = 0.0;
-            for(int i = 0; i < mask; i++){
-                score += euclideanDistanceFast(imageData, destIndexInBlockArr[i], destIndexInBlockArr[i+1], width, pearsonStep);
-            }
-            if(score > bestScore){
-                bestScore = score;
-                bestKey.s = s;
+        double[] sScores = new double[128];
+        IntStream.range(0, 128).parallel().forEach(s ->
+                sScores[s] = sequenceScore(signatures.data(), 0, 2*s +1, mask, signatures.width(), 1.0));
+
+        // Sur un petit bloc, plusieurs s donnent le même pas modulo N : seul le plus petit est gardé,
+        // pour que les candidats confirmés correspondent à des ordres de lignes distincts
+        for (int s = 0; s < 128; s++) {
+            for (int t = 0; t < s; t++) {
+                if (((2*t +1) & mask) == ((2*s +1) & mask)) {
+                    sScores[s] = Double.NEGATIVE_INFINITY;
+                    break;
+                }
             }
         }
-        bestScore = Double.NEGATIVE_INFINITY;
-        steps = 2*bestKey.s +1;
-        for(int r = 0; r < 256; r++){
-            for(int i = 0; i < N; i++){
-                destIndexInBlockArr[i] = (r + steps * i) & mask;
-            }
-            score = 0.0;
-            for(int i = 0; i < mask; i++){
-                score += euclideanDistanceFast(imageData, destIndexInBlockArr[i], destIndexInBlockArr[i+1], width, pearsonStep);
-            }
-            if(score > bestScore){
+
+        // Confirmation des meilleurs candidats sur les lignes complètes
+        int bestS = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int s : topCandidates(sScores, CONFIRMED_CANDIDATES)) {
+            double score = sequenceScore(sampledData, 0, 2*s +1, mask, sampledWidth, 1.0);
+            if (bestS < 0 || score > bestScore || (score == bestScore && s < bestS)) {
                 bestScore = score;
-                bestKey.r = r;
+                bestS = s;
             }
         }
-        return bestKey;
+
+        int bestR = argMax(rScores(sampledData, 2*bestS +1, mask, sampledWidth, 1.0));
+
+        return new Key(bestR, bestS);
+    }
+
+    /**
+     * Craque la clé par une recherche exhaustive sur les 32 768 couples (r, s).
+     * Les 128 valeurs de s sont traitées en parallèle, et pour chacune les 256 valeurs de r
+     * sont déduites d'une seule table de distances. Plus lent que bruteForceCrack, mais
+     * ne suppose pas que s puisse être trouvé indépendamment de r.
+     *
+     * @param image l'image chiffrée
+     * @return la clé de meilleur score (r, s)
+     */
+    public static Key bruteForceCrackExhaustive(Mat image){
+        int N = largestPowerOf2(image.rows());
+        int width = image.cols();
+        Mat gray = new Mat();
+        Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
+        byte[] imageData = grayBlock(gray, N);
+        gray.release();
+
+        int mask = N -1;
+        double pearsonStep = Math.max( 1.0, (double) width/480.0);
+        byte[] sampledData = sampledBlock(imageData, N, width, pearsonStep);
+        int sampledWidth = sampledData.length / N;
+
+        // Indice du candidat : s * 256 + r
+        double[] scores = new double[128 * 256];
+        IntStream.range(0, 128).parallel().forEach(s ->
+                System.arraycopy(rScores(sampledData, 2*s +1, mask, sampledWidth, 1.0), 0, scores, s * 256, 256));
+        int best = argMax(scores);
+
+        return new Key(best & 255, best >> 8);
+    }
+
+    /**
+     * Extrait le premier bloc de N lignes d'une image en niveaux de gris.
+     *
+     * @param gray l'image en niveaux de gris
+     * @param N le nombre de lignes à extraire
+     * @return les N premières lignes
+     */
+    private static byte[] grayBlock(Mat gray, int N) {
+        byte[] imageData = new byte[N * gray.cols()];
+        gray.get(0, 0, imageData);
+        return imageData;
+    }
+
+    /**
+     * Regroupe les colonnes échantillonnées de chaque ligne en lignes contiguës, une fois par image :
+     * les distances entre lignes passent alors par les noyaux vectorisés avec un pas de 1,
+     * sur exactement les mêmes colonnes qu'avec {@link #euclideanDistanceFast} et ce pas.
+     *
+     * @param data les lignes du bloc en niveaux de gris
+     * @param rows le nombre de lignes
+     * @param width la largeur d'une ligne
+     * @param step le pas d'échantillonnage dans une ligne
+     * @return les lignes échantillonnées, ou data lui-même si le pas vaut 1
+     */
+    private static byte[] sampledBlock(byte[] data, int rows, int width, double step) {
+        if (step == 1.0) return data;
+        int[] columns = sampledColumns(width, step);
+        byte[] sampled = new byte[rows * columns.length];
+        for (int row = 0, src = 0, dst = 0; row < rows; row++, src += width) {
+            for (int column : columns) sampled[dst++] = data[src + column];
+        }
+        return sampled;
+    }
+
+    /**
+     * Score d'une clé : somme des distances entre les lignes consécutives de l'ordre
+     * qu'elle reconstruit, c'est-à-dire entre les lignes (r + step*i) et (r + step*(i+1)).
+     *
+     * @param imageData les lignes du bloc en niveaux de gris
+     * @param r le paramètre r de la clé
+     * @param step le pas 2s + 1 de la clé
+     * @param mask le masque du bloc
+     * @param width la largeur d'une ligne
+     * @param sampleStep le pas d'échantillonnage dans une ligne
+     * @return le score (plus il est élevé, plus la clé est probable)
+     */
+    private static double sequenceScore(byte[] imageData, int r, int step, int mask, int width, double sampleStep) {
+        double score = 0.0;
+        int current = r & mask;
+        int next;
+        for(int i = 0; i < mask; i++){
+            next = (current + step) & mask;
+            score += euclideanDistanceFast(imageData, current, next, width, sampleStep);
+            current = next;
+        }
+        return score;
+    }
+
+    /**
+     * Scores des 256 valeurs de r pour un pas fixé, identiques à ceux de {@link #sequenceScore}.
+     * Changer r ne fait que décaler circulairement l'ordre reconstruit q(m) = step*m :
+     * l'ordre obtenu avec r commence en q(j), où q(j) = r, et parcourt les N - 1 paires
+     * consécutives du cycle sauf (q(j-1), q(j)). On calcule donc une fois les N distances
+     * du cycle, et chaque score vaut leur total moins la distance de la paire exclue.
+     * Les distances étant entières, le résultat est exactement celui du calcul direct.
+     *
+     * @param imageData les lignes du bloc en niveaux de gris
+     * @param step le pas 2s + 1 de la clé
+     * @param mask le masque du bloc
+     * @param width la largeur d'une ligne
+     * @param sampleStep le pas d'échantillonnage dans une ligne
+     * @return le score de chaque valeur de r (0-255)
+     */
+    private static double[] rScores(byte[] imageData, int step, int mask, int width, double sampleStep) {
+        int N = mask + 1;
+        double[] pairDistances = new double[N];  // distance entre q(m) et q(m+1)
+        int[] positionInCycle = new int[N];      // m tel que q(m) = ligne
+        double total = 0.0;
+
+        int current = 0;
+        int next;
+        for (int m = 0; m < N; m++) {
+            positionInCycle[current] = m;
+            next = (current + step) & mask;
+            pairDistances[m] = euclideanDistanceFast(imageData, current, next, width, sampleStep);
+            total += pairDistances[m];
+            current = next;
+        }
+
+        double[] scores = new double[256];
+        for (int r = 0; r < 256; r++) {
+            int j = positionInCycle[r & mask];
+            scores[r] = total - pairDistances[(j - 1) & mask];
+        }
+        return scores;
+    }
+
+    /**
+     * Retourne les indices des meilleurs scores, du meilleur au moins bon
+     * (le plus petit indice d'abord en cas d'égalité).
+     *
+     * @param scores les scores
+     * @param count le nombre d'indices voulus
+     * @return les indices des count meilleurs scores
+     */
+    private static int[] topCandidates(double[] scores, int count) {
+        int[] top = new int[Math.min(count, scores.length)];
+        int filled = 0;
+        for (int i = 0; i < scores.length; i++) {
+            // Insertion dans la liste triée, qui reste très courte
+            int pos = filled;
+            while (pos > 0 && scores[i] > scores[top[pos - 1]]) pos--;
+            if (pos >= top.length) continue;
+            int end = Math.min(filled, top.length - 1);
+            System.arraycopy(top, pos, top, pos + 1, end - pos);
+            top[pos] = i;
+            if (filled < top.length) filled++;
+        }
+        return top;
+    }
+
+    /**
+     * Retourne l'indice du premier maximum d'un tableau de scores.
+     *
+     * @param scores les scores
+     * @return l'indice du meilleur score (le plus petit en cas d'égalité)
+     */
+    private static int argMax(double[] scores) {
+        int best = 0;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[best]) best = i;
+        }
+        return best;
     }
 
     /**
@@ -517,12 +1130,8 @@ public class Encryption {
      * @return la variance totale de la ligne
      */
     private static long calculateRowVarianceMono(byte[] rowData, int rowIndex, int width) {
-        long totalVariance = 0;
+        // Différences entre la ligne et elle-même décalée d'un pixel
         int start = rowIndex * width;
-        int end = start + width - 1;
-        for (int i = start; i < end; i++) {
-            totalVariance += Math.abs( (rowData[i] & 0xFF) - (rowData[i + 1] & 0xFF));
-        }
-        return totalVariance;
+        return RowKernels.INSTANCE.sumAbsDiff(rowData, start, rowData, start + 1, width - 1);
     }
 }
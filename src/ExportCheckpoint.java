@@ -0,0 +1,122 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Fichier de reprise d'un export segmenté, placé à côté du fichier de sortie.
+ * Il enregistre l'empreinte de l'export (source, plages, paramètres du traitement)
+ * et le nombre de frames de chaque segment terminé. Un export relancé avec la même empreinte
+ * réutilise les segments terminés au lieu de les recalculer ; une empreinte différente
+ * invalide le fichier.
+ * Chaque mise à jour réécrit le fichier entier puis le renomme : une interruption
+ * ne laisse jamais un fichier à moitié écrit.
+ */
+public class ExportCheckpoint {
+
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String SEGMENT_PREFIX = "segment.";
+
+    private final File file;
+    private final Properties properties = new Properties();
+    private final boolean resumed;
+    private final List<Integer> staleSegments = new ArrayList<>();
+
+    /**
+     * Ouvre le fichier de reprise d'un export. Son contenu n'est conservé que
+     * s'il a été écrit pour la même empreinte.
+     *
+     * @param file le fichier de reprise
+     * @param fingerprint l'empreinte de l'export
+     */
+    public ExportCheckpoint(File file, String fingerprint) {
+        this.file = file;
+        if (file.isFile()) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                properties.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Fichier de reprise illisible, export repris depuis le début : " + file);
+                properties.clear();
+            }
+        }
+        resumed = fingerprint.equals(properties.getProperty(FINGERPRINT));
+        if (!resumed) {
+            for (String name : properties.stringPropertyNames()) {
+                if (!name.startsWith(SEGMENT_PREFIX)) continue;
+                try {
+                    staleSegments.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Entrée inconnue : aucun fichier segment à supprimer
+                }
+            }
+            properties.clear();
+            properties.setProperty(FINGERPRINT, fingerprint);
+        }
+    }
+
+    /**
+     * Indique si le fichier de reprise existant a été écrit pour la même empreinte. Sinon,
+     * les segments présents à côté de la sortie viennent d'un autre export et ne doivent pas être repris.
+     *
+     * @return true si l'export reprend un export précédent
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Retourne les numéros des segments notés comme terminés par un fichier de reprise écarté
+     * (autre empreinte) : leurs fichiers ont été écrits par cet export précédent.
+     *
+     * @return les numéros des segments, vide si le fichier de reprise est repris ou absent
+     */
+    public List<Integer> staleSegments() {
+        return staleSegments;
+    }
+
+    /**
+     * Retourne le nombre de frames d'un segment terminé lors d'un export précédent.
+     *
+     * @param segment le numéro du segment
+     * @return le nombre de frames écrites, ou -1 si le segment n'est pas terminé
+     */
+    public synchronized long completedFrames(int segment) {
+        String value = properties.getProperty(SEGMENT_PREFIX + segment);
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Enregistre un segment terminé, une fois son fichier fermé.
+     *
+     * @param segment le numéro du segment
+     * @param frames le nombre de frames écrites
+     * @throws IOException si le fichier de reprise n'a pas pu être écrit
+     */
+    public synchronized void markCompleted(int segment, long frames) throws IOException {
+        properties.setProperty(SEGMENT_PREFIX + segment, String.valueOf(frames));
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+            properties.store(out, "Reprise de l'export VideoScrambler");
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Supprime le fichier de reprise, une fois l'export terminé.
+     */
+    public void delete() {
+        file.delete();
+    }
+}
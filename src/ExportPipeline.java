@@ -0,0 +1,278 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.VideoWriter;
+import org.opencv.videoio.Videoio;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Export d'une vidéo traitée sous forme de pipeline à trois étages :
+ * un thread de décodage, N threads de traitement et un étage d'encodage (le thread appelant).
+ * Les étages communiquent par des files bornées et les Mat sont recyclées d'une frame à l'autre.
+ * L'ordre des frames est rétabli à l'encodage grâce à leur numéro de séquence,
+ * si bien que le débit est limité par l'étage le plus lent et non par la somme des trois.
+ */
+public class ExportPipeline {
+
+    /**
+     * Nombre de threads de traitement par défaut : les cœurs restants une fois
+     * le décodage et l'encodage servis.
+     */
+    public static final int DEFAULT_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+
+    /**
+     * Marqueur de fin de flux transmis entre les étages.
+     */
+    private static final Slot END = new Slot();
+
+    /**
+     * Intervalle, en millisecondes, auquel l'étage d'encodage revérifie l'état des autres étages
+     * lorsqu'aucune frame traitée n'est disponible.
+     */
+    private static final long POLL_MS = 100;
+
+    /**
+     * Délai maximal, en secondes, d'arrêt des étages avant la libération des Mat.
+     */
+    private static final long RELEASE_TIMEOUT_S = 30;
+
+    private final String sourcePath;
+    private final String outPath;
+    private final FrameProcessor processor;
+    private final int workers;
+
+    /**
+     * Construit un pipeline d'export.
+     *
+     * @param sourcePath le chemin de la vidéo source
+     * @param outPath le chemin du fichier de sortie
+     * @param processor le traitement à appliquer à chaque frame (doit pouvoir être appelé depuis plusieurs threads)
+     * @param workers le nombre de threads de traitement
+     */
+    public ExportPipeline(String sourcePath, String outPath, FrameProcessor processor, int workers) {
+        this.sourcePath = sourcePath;
+        this.outPath = outPath;
+        this.processor = processor;
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * Exécute l'export complet. Utilise le codec HuffYUV (HFYU) pour un export lossless rapide.
+     *
+     * @param progress reçoit l'avancement (entre 0 et 1) au fil de l'encodage
+     * @return le nombre de frames écrites, ou -1 si la source ou la destination n'a pas pu être ouverte
+     * @throws InterruptedException si le thread appelant est interrompu
+     * @throws ExecutionException si le décodage ou le traitement d'une frame a échoué
+     */
+    public long run(DoubleConsumer progress) throws InterruptedException, ExecutionException {
+        VideoCapture cap = new VideoCapture(sourcePath);
+        if (!cap.isOpened()) {
+            System.err.println("Erreur: Impossible d'ouvrir la vidéo source pour l'export.");
+            return -1;
+        }
+
+        int w = (int) cap.get(Videoio.CAP_PROP_FRAME_WIDTH);
+        int h = (int) cap.get(Videoio.CAP_PROP_FRAME_HEIGHT);
+        double vidFps = cap.get(Videoio.CAP_PROP_FPS);
+        if (vidFps <= 0) vidFps = 30.0;
+
+        // Utilisation de HuffYUV (HFYU)
+        // C'est un codec Lossless (Sans perte) mais beaucoup plus rapide que FFV1
+        // Le fichier sera un peu plus gros, mais l'export sera rapide.
+        int fourcc = VideoWriter.fourcc('H','F','Y','U');
+
+        VideoWriter writer = new VideoWriter(outPath, fourcc, vidFps, new Size(w, h), true);
+
+        if (!writer.isOpened()) {
+            System.err.println("Erreur: Impossible de créer le fichier de sortie avec HFYU. Codec manquant ?");
+            cap.release();
+            return -1;
+        }
+
+        int total = (int) cap.get(Videoio.CAP_PROP_FRAME_COUNT);
+        if (total <= 0) total = 1;
+
+        // Assez de Mat pour que chaque étage ait toujours du travail d'avance
+        int poolSize = 2 * workers + 2;
+        Slot[] slots = new Slot[poolSize];
+        BlockingQueue<Slot> free = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            slots[i] = new Slot();
+            free.add(slots[i]);
+        }
+        BlockingQueue<Slot> decoded = new ArrayBlockingQueue<>(poolSize + workers);
+        BlockingQueue<Slot> processed = new ArrayBlockingQueue<>(poolSize + workers);
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers + 1, r -> {
+            // Un thread par cœur : les permutations de chaque frame restent dans son thread
+            Thread t = new Thread(RowPermutation.sequential(r), "export-pipeline");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Première erreur d'un étage, enregistrée avant son marqueur de fin : l'encodeur la voit
+        // sans attendre la fin de la tâche, et la frame en échec ne bloque donc pas l'export
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Future<?>[] stages = new Future<?>[workers + 1];
+        stages[0] = executor.submit(() -> {
+            decode(cap, free, decoded, failure);
+            return null;
+        });
+        for (int i = 1; i <= workers; i++) {
+            stages[i] = executor.submit(() -> {
+                process(decoded, processed, failure);
+                return null;
+            });
+        }
+
+        long count = 0;
+        try {
+            Map<Long, Slot> pending = new HashMap<>();
+            int finishedWorkers = 0;
+
+            while (finishedWorkers < workers) {
+                Slot slot = processed.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                // Un étage en échec arrête l'export : sa frame ne sera jamais écrite
+                // et les autres étages finiraient par attendre indéfiniment
+                Throwable error = failure.get();
+                if (error != null) throw new ExecutionException(error);
+                if (slot == null) {
+                    for (Future<?> stage : stages) {
+                        if (stage.isDone()) stage.get();
+                    }
+                    continue;
+                }
+                if (slot == END) {
+                    finishedWorkers++;
+                    continue;
+                }
+                pending.put(slot.seq, slot);
+
+                // Écriture de toutes les frames disponibles dans l'ordre
+                while ((slot = pending.remove(count)) != null) {
+                    writer.write(slot.output);
+                    free.put(slot);
+                    count++;
+
+                    if (count % 5 == 0) { // Mise à jour de la barre plus fréquente
+                        progress.accept((double) count / total);
+                    }
+                }
+            }
+            // Remonte une éventuelle erreur d'un étage
+            Throwable error = failure.get();
+            if (error != null) throw new ExecutionException(error);
+            for (Future<?> stage : stages) stage.get();
+        } finally {
+            executor.shutdownNow();
+            writer.release();
+            releaseSlots(executor, slots);
+        }
+        return count;
+    }
+
+    /**
+     * Libère les Mat de tous les emplacements, où qu'ils se trouvent (files, frames en attente),
+     * une fois les étages arrêtés : un étage encore en cours pourrait écrire dans une Mat libérée.
+     *
+     * @param executor les étages, déjà arrêtés par shutdownNow
+     * @param slots tous les emplacements du pipeline
+     */
+    private static void releaseSlots(ExecutorService executor, Slot[] slots) {
+        try {
+            if (!executor.awaitTermination(RELEASE_TIMEOUT_S, TimeUnit.SECONDS)) {
+                System.err.println("Erreur: un étage de l'export ne s'est pas arrêté, ses Mat ne sont pas libérées.");
+                return;
+            }
+        } catch (InterruptedException e) {
+            // Les Mat restent au ramasse-miettes ; l'interruption est transmise à l'appelant
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (Slot slot : slots) {
+            slot.input.release();
+            slot.output.release();
+        }
+    }
+
+    /**
+     * Étage de décodage : lit les frames dans des Mat recyclées et les numérote.
+     * Libère la vidéo source une fois la lecture terminée.
+     *
+     * @param cap la vidéo source
+     * @param free les emplacements libres
+     * @param decoded la file des frames décodées
+     * @param failure reçoit l'erreur de l'étage, avant l'envoi des marqueurs de fin
+     * @throws InterruptedException si le pipeline est arrêté
+     */
+    private void decode(VideoCapture cap, BlockingQueue<Slot> free, BlockingQueue<Slot> decoded,
+                        AtomicReference<Throwable> failure) throws InterruptedException {
+        try {
+            long seq = 0;
+            while (true) {
+                Slot slot = free.take();
+                if (!cap.read(slot.input) || slot.input.empty()) {
+                    free.put(slot);
+                    break;
+                }
+                slot.seq = seq++;
+                decoded.put(slot);
+            }
+        } catch (RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+            throw e;
+        } finally {
+            // La source n'est utilisée que par ce thread, elle est libérée ici
+            cap.release();
+            // Un marqueur de fin par thread de traitement
+            for (int i = 0; i < workers; i++) decoded.put(END);
+        }
+    }
+
+    /**
+     * Étage de traitement : applique le processeur aux frames décodées.
+     *
+     * @param decoded la file des frames décodées
+     * @param processed la file des frames traitées
+     * @param failure reçoit l'erreur de l'étage, avant l'envoi de son marqueur de fin
+     * @throws InterruptedException si le pipeline est arrêté
+     */
+    private void process(BlockingQueue<Slot> decoded, BlockingQueue<Slot> processed,
+                         AtomicReference<Throwable> failure) throws InterruptedException {
+        try {
+            Slot slot;
+            while ((slot = decoded.take()) != END) {
+                processor.process(slot.input, slot.output, slot.seq);
+                processed.put(slot);
+            }
+        } catch (RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+            throw e;
+        } finally {
+            processed.put(END);
+        }
+    }
+
+    /**
+     * Emplacement recyclé portant une frame d'entrée, sa version traitée et son numéro.
+     */
+    private static class Slot {
+        final Mat input = new Mat();
+        final Mat output = new Mat();
+        long seq;
+    }
+}
@@ -0,0 +1,124 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Mat;
+
+/**
+ * Traitement appliqué à chaque frame d'une vidéo (chiffrement, déchiffrement...).
+ * Le résultat est écrit dans une Mat de destination fournie par l'appelant,
+ * ce qui permet de réutiliser les mêmes Mat d'une frame à l'autre.
+ */
+@FunctionalInterface
+public interface FrameProcessor {
+
+    /**
+     * Traite une frame.
+     *
+     * @param input la frame d'entrée
+     * @param output la Mat recevant la frame traitée (distincte de input)
+     * @param frameIndex le numéro de la frame dans la vidéo (utilisé par le mode dynamique)
+     */
+    void process(Mat input, Mat output, long frameIndex);
+
+    /**
+     * Vérifie la clé d'une frame sans la traiter, pour les traitements dont la clé est vérifiable
+     * (déchiffrement dynamique).
+     *
+     * @param input la frame d'entrée
+     * @param frameIndex le numéro de la frame dans la vidéo
+     * @return le résultat de la vérification, ou null si le traitement n'a pas de clé vérifiable
+     */
+    default KeyCheck checkKey(Mat input, long frameIndex) {
+        return null;
+    }
+
+    /**
+     * Crée un processeur de chiffrement statique.
+     *
+     * @param r le paramètre r de la clé (0-255)
+     * @param s le paramètre s de la clé (0-127)
+     * @return le processeur correspondant
+     */
+    static FrameProcessor encrypt(int r, int s) {
+        return (input, output, frameIndex) -> Encryption.encrypt(input, output, r, s);
+    }
+
+    /**
+     * Crée un processeur de déchiffrement statique.
+     *
+     * @param r le paramètre r de la clé (0-255)
+     * @param s le paramètre s de la clé (0-127)
+     * @return le processeur correspondant
+     */
+    static FrameProcessor decrypt(int r, int s) {
+        return (input, output, frameIndex) -> Encryption.decrypt(input, output, r, s);
+    }
+
+    /**
+     * Crée un processeur de chiffrement dynamique : la clé de chaque frame vient de la suite
+     * déterministe (k, numéro de frame), voir {@link KeySchedule}.
+     *
+     * @param k la graine des positions de la clé cachée et de la suite de clés
+     * @return le processeur correspondant
+     */
+    static FrameProcessor dynamicEncrypt(int k) {
+        return (input, output, frameIndex) -> Encryption.dynamicEncrypt(input, output, k, frameIndex);
+    }
+
+    /**
+     * Crée un processeur de déchiffrement dynamique : chaque frame est déchiffrée avec la clé
+     * de la suite de clés, vérifiée par la clé cachée dans ses pixels.
+     *
+     * @param k la graine des positions de la clé cachée et de la suite de clés
+     * @return le processeur correspondant
+     */
+    static FrameProcessor dynamicDecrypt(int k) {
+        return dynamicDecrypt(k, null);
+    }
+
+    /**
+     * Crée un processeur de déchiffrement dynamique qui consigne la vérification de clé de chaque frame.
+     *
+     * @param k la graine des positions de la clé cachée et de la suite de clés
+     * @param log reçoit le résultat de la vérification de chaque frame traitée (peut être null)
+     * @return le processeur correspondant
+     */
+    static FrameProcessor dynamicDecrypt(int k, KeyCheckLog log) {
+        return new FrameProcessor() {
+            @Override
+            public void process(Mat input, Mat output, long frameIndex) {
+                KeyCheck check = Encryption.dynamicDecrypt(input, output, k, frameIndex);
+                if (log != null) log.record(frameIndex, check);
+            }
+
+            @Override
+            public KeyCheck checkKey(Mat input, long frameIndex) {
+                return Encryption.checkDynamicKey(input, k, frameIndex);
+            }
+        };
+    }
+
+    /**
+     * Crée un processeur de déchiffrement qui retrouve la clé de chaque frame,
+     * avec son propre suivi de clé.
+     *
+     * @return le processeur correspondant
+     */
+    static FrameProcessor autoDecrypt() {
+        return autoDecrypt(new KeyTracker());
+    }
+
+    /**
+     * Crée un processeur de déchiffrement qui retrouve la clé de chaque frame :
+     * la clé trouvée est réutilisée tant qu'elle reste valide, smartCrack n'étant
+     * relancé qu'en cas d'échec de la validation.
+     *
+     * @param tracker le suivi de clé à utiliser
+     * @return le processeur correspondant
+     */
+    static FrameProcessor autoDecrypt(KeyTracker tracker) {
+        return (input, output, frameIndex) -> {
+            Key key = tracker.track(input);
+            Encryption.decrypt(input, output, key.r, key.s);
+        };
+    }
+}
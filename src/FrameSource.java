@@ -0,0 +1,181 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * Accès aléatoire aux frames d'une vidéo pour la navigation.
+ * Un seek oblige le décodeur à repartir de l'image clé précédente ; pour l'éviter :
+ * <ul>
+ *     <li>les frames décodées récemment sont gardées dans un cache LRU indexé par numéro de frame ;</li>
+ *     <li>une frame située peu après la position courante du décodeur est atteinte en lisant
+ *     la suite du flux, sans seek ;</li>
+ *     <li>un retour en arrière décode toute une fenêtre de frames jusqu'à la frame demandée,
+ *     si bien que les pas en arrière suivants sont servis par le cache.</li>
+ * </ul>
+ * Les méthodes sont synchronisées : la vidéo peut être libérée depuis un autre thread que celui qui lit.
+ */
+public class FrameSource {
+
+    /**
+     * Budget mémoire par défaut du cache de frames décodées, en Mo.
+     */
+    public static final int DEFAULT_CACHE_MB = Integer.getInteger("videoscrambler.frameCacheMb", 256);
+
+    /**
+     * Écart maximal, en frames, en deçà duquel on lit la suite du flux plutôt que de faire un seek.
+     */
+    private static final int MAX_FORWARD_SKIP = 30;
+
+    /**
+     * Nombre de frames décodées d'un coup lors d'un retour en arrière.
+     */
+    private static final int BACKWARD_WINDOW = 8;
+
+    private final VideoCapture capture;
+    private final MatCache<Integer> cache;
+    private final int frameCount;
+    private final double fps;
+
+    /**
+     * Numéro de la frame que le décodeur lira au prochain read, ou -1 si la position est inconnue.
+     */
+    private int nextIndex = -1;
+
+    /**
+     * Ouvre une vidéo.
+     *
+     * @param path le chemin de la vidéo
+     * @param cacheBytes le budget mémoire du cache de frames décodées
+     */
+    public FrameSource(String path, long cacheBytes) {
+        this.capture = new VideoCapture(path);
+        this.cache = new MatCache<>(cacheBytes);
+        if (capture.isOpened()) {
+            frameCount = (int) capture.get(Videoio.CAP_PROP_FRAME_COUNT);
+            fps = capture.get(Videoio.CAP_PROP_FPS);
+            nextIndex = 0;
+        } else {
+            frameCount = 0;
+            fps = 0;
+        }
+    }
+
+    /**
+     * Ouvre une vidéo avec le budget de cache par défaut.
+     *
+     * @param path le chemin de la vidéo
+     */
+    public FrameSource(String path) {
+        this(path, DEFAULT_CACHE_MB * 1024L * 1024L);
+    }
+
+    /**
+     * Indique si la vidéo a pu être ouverte.
+     *
+     * @return true si la vidéo est ouverte
+     */
+    public boolean isOpened() {
+        return capture.isOpened();
+    }
+
+    /**
+     * Retourne le nombre de frames annoncé par le conteneur.
+     *
+     * @return le nombre de frames
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Retourne le nombre d'images par seconde annoncé par le conteneur.
+     *
+     * @return les FPS (0 si inconnus)
+     */
+    public double getFps() {
+        return fps;
+    }
+
+    /**
+     * Retourne une frame décodée. La Mat renvoyée appartient au cache : elle ne doit pas être modifiée
+     * et n'est garantie valide que jusqu'au prochain appel.
+     *
+     * @param index le numéro de la frame
+     * @return la frame, ou null si elle n'a pas pu être lue
+     */
+    public synchronized Mat read(int index) {
+        if (!capture.isOpened() || index < 0 || (frameCount > 0 && index >= frameCount)) return null;
+
+        Mat cached = cache.get(index);
+        if (cached != null) return cached;
+
+        if (nextIndex < 0 || index < nextIndex) {
+            // Retour en arrière : décodage de la fenêtre qui se termine sur la frame demandée
+            seek(Math.max(0, index - BACKWARD_WINDOW + 1));
+        } else if (index - nextIndex > MAX_FORWARD_SKIP) {
+            seek(index);
+        }
+
+        Mat frame = null;
+        while (nextIndex >= 0 && nextIndex <= index) {
+            if (nextIndex < index && cache.get(nextIndex) != null) {
+                // Déjà en cache : on avance sans convertir la frame
+                skipNext();
+            } else {
+                frame = decodeNext();
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * Vide le cache de frames décodées.
+     */
+    public synchronized void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Libère la vidéo et le cache.
+     */
+    public synchronized void release() {
+        cache.clear();
+        capture.release();
+    }
+
+    /**
+     * Positionne le décodeur sur une frame.
+     *
+     * @param index le numéro de la frame
+     */
+    private void seek(int index) {
+        capture.set(Videoio.CAP_PROP_POS_FRAMES, index);
+        nextIndex = index;
+    }
+
+    /**
+     * Passe la frame suivante du flux sans la récupérer.
+     */
+    private void skipNext() {
+        nextIndex = capture.grab() ? nextIndex + 1 : -1;
+    }
+
+    /**
+     * Décode la frame suivante du flux et la place dans le cache.
+     *
+     * @return la frame décodée, ou null en fin de vidéo ou en cas d'erreur
+     */
+    private Mat decodeNext() {
+        Mat frame = new Mat();
+        if (!capture.read(frame) || frame.empty()) {
+            frame.release();
+            nextIndex = -1;
+            return null;
+        }
+        cache.put(nextIndex, frame);
+        nextIndex++;
+        return frame;
+    }
+}
@@ -0,0 +1,27 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+/**
+ * Résultat de la vérification de la clé d'une frame en mode dynamique.
+ * La clé de la frame est celle de la suite de clés ({@link KeySchedule}) ; la clé cachée
+ * dans les pixels lui sert de somme de contrôle.
+ */
+public enum KeyCheck {
+
+    /**
+     * La clé cachée est celle de la suite : la frame est déchiffrée avec la clé vérifiée.
+     */
+    VERIFIED,
+
+    /**
+     * La clé cachée diffère, mais la clé de la suite donne l'image la plus cohérente :
+     * les LSB ont été altérés (réencodage avec perte, retouche...). La frame est déchiffrée
+     * avec la clé de la suite.
+     */
+    CORRUPTED_CHECKSUM,
+
+    /**
+     * La clé cachée diffère et donne l'image la plus cohérente : la vidéo vient d'une version
+     * antérieure, qui tirait une clé aléatoire à chaque frame. La frame est déchiffrée avec sa clé cachée.
+     */
+    LEGACY
+}
@@ -0,0 +1,63 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bilan des vérifications de clé des frames d'une vidéo en mode dynamique, alimenté
+ * par le processeur de déchiffrement pendant un export. Les méthodes peuvent être appelées
+ * depuis plusieurs threads.
+ */
+public class KeyCheckLog {
+
+    private final AtomicLongArray counts = new AtomicLongArray(KeyCheck.values().length);
+    private final AtomicLong firstMismatch = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * Enregistre le résultat de la vérification d'une frame.
+     *
+     * @param frameIndex le numéro de la frame
+     * @param check le résultat de la vérification
+     */
+    public void record(long frameIndex, KeyCheck check) {
+        counts.incrementAndGet(check.ordinal());
+        if (check != KeyCheck.VERIFIED) firstMismatch.accumulateAndGet(frameIndex, Math::min);
+    }
+
+    /**
+     * Retourne le nombre de frames ayant obtenu un résultat donné.
+     *
+     * @param check le résultat
+     * @return le nombre de frames
+     */
+    public long count(KeyCheck check) {
+        return counts.get(check.ordinal());
+    }
+
+    /**
+     * Retourne le nombre de frames dont la clé cachée ne correspond pas à la suite de clés.
+     *
+     * @return le nombre de frames non vérifiées
+     */
+    public long mismatches() {
+        return count(KeyCheck.CORRUPTED_CHECKSUM) + count(KeyCheck.LEGACY);
+    }
+
+    /**
+     * Décrit les frames non vérifiées, pour l'utilisateur.
+     *
+     * @return le bilan, ou une chaîne vide si toutes les frames ont été vérifiées
+     */
+    public String summary() {
+        if (mismatches() == 0) return "";
+        StringBuilder text = new StringBuilder();
+        text.append(mismatches()).append(" frame(s) dont la clé cachée ne correspond pas à la suite de clés")
+                .append(" (première : frame ").append(firstMismatch.get()).append(") : ");
+        long corrupted = count(KeyCheck.CORRUPTED_CHECKSUM);
+        long legacy = count(KeyCheck.LEGACY);
+        if (corrupted > 0) text.append(corrupted).append(" altérée(s), déchiffrée(s) avec la suite de clés");
+        if (corrupted > 0 && legacy > 0) text.append(", ");
+        if (legacy > 0) text.append(legacy).append(" d'une version antérieure, déchiffrée(s) avec leur clé cachée");
+        return text.toString();
+    }
+}
@@ -0,0 +1,43 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+/**
+ * Suite de clés du mode dynamique : la clé de chaque frame est dérivée de la graine k
+ * et du numéro de la frame par un générateur à compteur (mélange SplitMix64).
+ * N'importe quelle clé se calcule donc en O(1), sans état ni parcours des frames précédentes,
+ * ce qui permet l'accès aléatoire et le traitement parallèle des frames.
+ */
+public final class KeySchedule {
+
+    private KeySchedule() {
+    }
+
+    /**
+     * Calcule la clé d'une frame.
+     *
+     * @param k la graine du mode dynamique
+     * @param frameIndex le numéro de la frame dans la vidéo
+     * @return la clé (r, s) de la frame
+     */
+    public static Key keyFor(int k, long frameIndex) {
+        int bits = keyBitsFor(k, frameIndex);
+        return new Key(bits & 0xFF, bits >> 8);
+    }
+
+    /**
+     * Calcule la clé d'une frame sous la forme des 15 bits cachés dans l'image
+     * (bits 0-7 : r, bits 8-14 : s).
+     *
+     * @param k la graine du mode dynamique
+     * @param frameIndex le numéro de la frame dans la vidéo
+     * @return les bits de la clé
+     */
+    public static int keyBitsFor(int k, long frameIndex) {
+        // Compteur de SplitMix64 : état de départ tiré de k, avancé de frameIndex + 1 pas
+        long z = ((long) k << 32) + (frameIndex + 1) * 0x9E3779B97F4A7C15L;
+        // Finaliseur : deux compteurs voisins donnent des clés indépendantes
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) (z & 0x7FFF);
+    }
+}
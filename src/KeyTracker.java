@@ -0,0 +1,164 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Mat;
+
+/**
+ * Suivi de la clé d'une vidéo chiffrée frame après frame.
+ * La clé est cherchée par smartCrack sur la première frame, puis seulement revalidée
+ * à moindre coût sur les suivantes, en mesurant la distance entre quelques paires de lignes
+ * qui doivent être voisines dans l'image claire si la clé est toujours la bonne.
+ * Un smartCrack complet n'est relancé que si la validation échoue
+ * (changement de plan, changement de clé...).
+ * Les méthodes peuvent être appelées depuis plusieurs threads : la clé et la hauteur de frame
+ * pour laquelle elle a été trouvée sont publiées ensemble. Un suivi n'est toutefois efficace
+ * que pour des frames successives : chaque consommateur (aperçu, lecture, segment d'export)
+ * doit avoir le sien.
+ */
+public class KeyTracker {
+
+    /**
+     * Nombre de paires de lignes voisines échantillonnées pour la validation.
+     */
+    private static final int SAMPLE_PAIRS = 8;
+
+    /**
+     * Facteur dont les paires d'une clé incorrecte doivent dépasser celles de la clé en cache.
+     */
+    private static final double ALTERNATIVE_MARGIN = 1.25;
+
+    /**
+     * Facteur dont la rupture entre le haut et le bas du bloc doit dépasser la distance moyenne
+     * entre lignes voisines pour que r soit considéré comme valide.
+     */
+    private static final double SEAM_FACTOR = 1.5;
+
+    /**
+     * Hauteur de bloc minimale en dessous de laquelle la validation n'est pas fiable.
+     */
+    private static final int MIN_BLOCK_SIZE = 32;
+
+    /**
+     * Tampons de lignes de la validation, un couple par thread, réutilisés d'une frame à l'autre.
+     */
+    private static final ThreadLocal<byte[][]> ROW_BUFFERS = ThreadLocal.withInitial(() -> new byte[2][0]);
+
+    private volatile Cached cached;
+
+    /**
+     * Retourne la clé de la frame, en réutilisant la clé en cache si elle est toujours valide.
+     *
+     * @param frame la frame chiffrée (BGR)
+     * @return la clé (r, s) de la frame
+     */
+    public Key track(Mat frame) {
+        Cached current = cached;
+        if (current != null && current.height == frame.rows() && isValid(frame, current.key)) {
+            return current.key;
+        }
+        Key key = Encryption.smartCrack(frame);
+        cached = new Cached(key, frame.rows());
+        return key;
+    }
+
+    /**
+     * Oublie la clé en cache, par exemple à l'ouverture d'une nouvelle vidéo.
+     */
+    public void reset() {
+        cached = null;
+    }
+
+    /**
+     * Vérifie qu'une clé déchiffre toujours correctement la frame, en ne lisant qu'une
+     * trentaine de lignes : les paires voisines selon la clé doivent être nettement plus proches
+     * que celles obtenues avec d'autres valeurs de s, et la rupture choisie pour r doit rester marquée.
+     *
+     * @param frame la frame chiffrée
+     * @param key la clé à valider
+     * @return true si la clé semble toujours valide
+     */
+    private boolean isValid(Mat frame, Key key) {
+        int blockSize = Integer.highestOneBit(frame.rows());
+        if (blockSize < MIN_BLOCK_SIZE) return false;
+
+        int blockMask = blockSize - 1;
+        int step = 2 * key.s + 1;
+        int rowSize = frame.cols() * frame.channels();
+        byte[][] buffers = ROW_BUFFERS.get();
+        if (buffers[0].length != rowSize) {
+            buffers[0] = new byte[rowSize];
+            buffers[1] = new byte[rowSize];
+        }
+        byte[] rowA = buffers[0];
+        byte[] rowB = buffers[1];
+
+        double keyScore = pairsScore(frame, key.r, step, step, blockMask, rowA, rowB);
+
+        // Deux valeurs de s éloignées servent d'échelle de référence pour cette scène.
+        // L'écart impair avec s garantit que la ligne suivante testée n'est jamais la même
+        int[] alternatives = {(key.s + 33) & 127, (key.s + 95) & 127};
+        for (int alternative : alternatives) {
+            double alternativeScore = pairsScore(frame, key.r, step, 2 * alternative + 1, blockMask, rowA, rowB);
+            if (alternativeScore <= keyScore * ALTERNATIVE_MARGIN) return false;
+        }
+
+        // Ligne r : première ligne du bloc clair, (r - step) : dernière ligne du bloc clair
+        double seam = rowDistance(frame, key.r & blockMask, (key.r - step) & blockMask, rowA, rowB);
+        return seam > SEAM_FACTOR * keyScore / SAMPLE_PAIRS;
+    }
+
+    /**
+     * Somme des distances entre les lignes claires i et i+1 pour quelques i répartis dans le bloc,
+     * la ligne i étant localisée avec le pas step et la ligne i+1 avec le pas nextStep.
+     *
+     * @param frame la frame chiffrée
+     * @param r le paramètre r de la clé
+     * @param step le pas (2s + 1) de la clé testée
+     * @param nextStep le pas utilisé pour localiser la ligne suivante
+     * @param blockMask le masque du premier bloc
+     * @param rowA tampon pour la première ligne
+     * @param rowB tampon pour la seconde ligne
+     * @return la somme des distances des paires échantillonnées
+     */
+    private static double pairsScore(Mat frame, int r, int step, int nextStep, int blockMask,
+                                      byte[] rowA, byte[] rowB) {
+        double score = 0;
+        for (int j = 0; j < SAMPLE_PAIRS; j++) {
+            // i pair : le décalage 2 (s' - s)(i + 1) introduit par un autre s n'est jamais nul modulo le bloc
+            int i = (int) ((j + 0.5) * blockMask / SAMPLE_PAIRS) & ~1;
+            int row = (r + step * i) & blockMask;
+            int next = (r + nextStep * (i + 1)) & blockMask;
+            score += rowDistance(frame, row, next, rowA, rowB);
+        }
+        return score;
+    }
+
+    /**
+     * Distance moyenne (par octet) entre deux lignes de la frame.
+     *
+     * @param frame la frame
+     * @param row1 l'indice de la première ligne
+     * @param row2 l'indice de la seconde ligne
+     * @param rowA tampon pour la première ligne
+     * @param rowB tampon pour la seconde ligne
+     * @return la moyenne des différences absolues
+     */
+    private static double rowDistance(Mat frame, int row1, int row2, byte[] rowA, byte[] rowB) {
+        frame.get(row1, 0, rowA);
+        frame.get(row2, 0, rowB);
+        long sum = RowKernels.INSTANCE.sumAbsDiff(rowA, 0, rowB, 0, rowA.length);
+        return (double) sum / rowA.length;
+    }
+
+    /**
+     * Clé en cache et hauteur des frames pour laquelle elle a été trouvée, publiées par une seule écriture.
+     */
+    private static final class Cached {
+        final Key key;
+        final int height;
+
+        Cached(Key key, int height) {
+            this.key = key;
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Mat;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU de Mat borné par un budget mémoire : les entrées les moins récemment utilisées
+ * sont libérées dès que la taille totale des Mat dépasse le budget.
+ * Les Mat confiées au cache lui appartiennent : elles sont libérées à leur éviction,
+ * et une Mat obtenue par {@link #get} ne doit pas être modifiée.
+ *
+ * @param <K> le type des clés
+ */
+public class MatCache<K> {
+
+    private final long budgetBytes;
+    private final LinkedHashMap<K, Mat> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes = 0;
+
+    /**
+     * Construit un cache vide.
+     *
+     * @param budgetBytes la taille totale maximale des Mat conservées, en octets
+     */
+    public MatCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Retourne la Mat associée à une clé et la marque comme récemment utilisée.
+     *
+     * @param key la clé
+     * @return la Mat en cache, ou null si elle est absente
+     */
+    public synchronized Mat get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Ajoute une Mat au cache (qui en devient propriétaire), puis libère les entrées
+     * les plus anciennes tant que le budget est dépassé. L'entrée ajoutée n'est jamais évincée
+     * par son propre ajout, même si elle dépasse le budget à elle seule.
+     *
+     * @param key la clé
+     * @param mat la Mat à conserver
+     */
+    public synchronized void put(K key, Mat mat) {
+        Mat previous = entries.put(key, mat);
+        if (previous != null && previous != mat) {
+            usedBytes -= sizeOf(previous);
+            previous.release();
+        }
+        if (previous != mat) usedBytes += sizeOf(mat);
+
+        Iterator<Map.Entry<K, Mat>> it = entries.entrySet().iterator();
+        while (usedBytes > budgetBytes && entries.size() > 1) {
+            Map.Entry<K, Mat> eldest = it.next();
+            usedBytes -= sizeOf(eldest.getValue());
+            eldest.getValue().release();
+            it.remove();
+        }
+    }
+
+    /**
+     * Vide le cache et libère toutes les Mat.
+     */
+    public synchronized void clear() {
+        for (Mat mat : entries.values()) mat.release();
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Retourne la taille totale des Mat en cache.
+     *
+     * @return le nombre d'octets utilisés
+     */
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Taille des données d'une Mat.
+     *
+     * @param mat la Mat
+     * @return sa taille en octets
+     */
+    private static long sizeOf(Mat mat) {
+        return mat.total() * mat.elemSize();
+    }
+}
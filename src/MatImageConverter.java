@@ -0,0 +1,160 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Conversion de Mat OpenCV en Image JavaFX pour une vue donnée.
+ * L'image, les Mat intermédiaires et le tampon d'octets sont réutilisés d'une frame à l'autre :
+ * seule une conversion BGR vers RGB (native) et une copie sont faites par frame,
+ * sans allocation ni boucle par pixel côté Java.
+ * Pour l'aperçu, la frame peut d'abord être réduite à la taille de la vue : la conversion
+ * et la copie vers JavaFX ne portent alors que sur les pixels réellement affichés.
+ * <p>
+ * La conversion peut aussi se faire en deux temps : {@link #prepare} (OpenCV, sur n'importe quel thread)
+ * puis {@link #publish} (écriture dans l'image, sur le thread JavaFX). Une instance par ImageView ;
+ * prepare et convert ne doivent pas être appelés par deux threads à la fois.
+ */
+public class MatImageConverter {
+
+    private final Mat reduced = new Mat();
+    private final Mat scaled = new Mat();
+    private final Mat rgb = new Mat();
+    private byte[] buffer = new byte[0];
+    private WritableImage image;
+
+    /**
+     * Convertit une frame en image d'aperçu, réduite (moyenne par zones) pour tenir dans la taille donnée
+     * en conservant ses proportions. Une frame déjà plus petite est convertie telle quelle.
+     *
+     * @param mat la frame à convertir (pleine résolution)
+     * @param maxWidth la largeur maximale en pixels (0 ou moins : pas de limite)
+     * @param maxHeight la hauteur maximale en pixels (0 ou moins : pas de limite)
+     * @return l'image JavaFX correspondante
+     */
+    public Image convert(Mat mat, double maxWidth, double maxHeight) {
+        return convert(shrink(mat, maxWidth, maxHeight));
+    }
+
+    /**
+     * Convertit une frame en image. L'image renvoyée est la même d'un appel à l'autre
+     * tant que la taille ne change pas : elle est mise à jour sur place.
+     * Gère les images en niveaux de gris, BGR et BGRA.
+     *
+     * @param mat la frame à convertir
+     * @return l'image JavaFX correspondante
+     */
+    public Image convert(Mat mat) {
+        toRgb(mat);
+        int size = mat.cols() * mat.rows() * 3;
+        if (buffer.length != size) buffer = new byte[size];
+        rgb.get(0, 0, buffer);
+        return write(buffer, mat.cols(), mat.rows());
+    }
+
+    /**
+     * Première étape d'une conversion en deux temps : réduit la frame et la convertit en RGB
+     * dans un tableau indépendant, qui reste valide une fois la frame libérée ou réutilisée.
+     *
+     * @param mat la frame à convertir (pleine résolution)
+     * @param maxWidth la largeur maximale en pixels (0 ou moins : pas de limite)
+     * @param maxHeight la hauteur maximale en pixels (0 ou moins : pas de limite)
+     * @return les pixels RGB de l'aperçu
+     */
+    public Preview prepare(Mat mat, double maxWidth, double maxHeight) {
+        Mat small = shrink(mat, maxWidth, maxHeight);
+        toRgb(small);
+        byte[] pixels = new byte[small.cols() * small.rows() * 3];
+        rgb.get(0, 0, pixels);
+        return new Preview(pixels, small.cols(), small.rows());
+    }
+
+    /**
+     * Seconde étape d'une conversion en deux temps : écrit un aperçu préparé dans l'image de la vue.
+     * À appeler depuis le thread JavaFX.
+     *
+     * @param preview l'aperçu préparé par {@link #prepare}
+     * @return l'image JavaFX correspondante
+     */
+    public Image publish(Preview preview) {
+        return write(preview.pixels, preview.width, preview.height);
+    }
+
+    /**
+     * Réduit une frame pour qu'elle tienne dans la taille donnée.
+     *
+     * @param mat la frame
+     * @param maxWidth la largeur maximale (0 ou moins : pas de limite)
+     * @param maxHeight la hauteur maximale (0 ou moins : pas de limite)
+     * @return la frame elle-même si elle tient déjà, sinon une Mat interne réduite
+     */
+    private Mat shrink(Mat mat, double maxWidth, double maxHeight) {
+        double scale = 1.0;
+        if (maxWidth > 0) scale = Math.min(scale, maxWidth / mat.cols());
+        if (maxHeight > 0) scale = Math.min(scale, maxHeight / mat.rows());
+        if (scale >= 1.0) return mat;
+
+        int w = Math.max(1, (int) Math.round(mat.cols() * scale));
+        int h = Math.max(1, (int) Math.round(mat.rows() * scale));
+
+        // INTER_AREA n'a de chemin rapide que pour un facteur entier : réduction par le plus grand
+        // facteur entier possible, puis ajustement (facteur inférieur à 2) en bilinéaire
+        int factor = (int) (1.0 / scale);
+        if (factor >= 2) {
+            Imgproc.resize(mat, reduced, new Size(0, 0), 1.0 / factor, 1.0 / factor, Imgproc.INTER_AREA);
+            if (reduced.cols() == w && reduced.rows() == h) return reduced;
+            Imgproc.resize(reduced, scaled, new Size(w, h), 0, 0, Imgproc.INTER_LINEAR);
+        } else {
+            Imgproc.resize(mat, scaled, new Size(w, h), 0, 0, Imgproc.INTER_AREA);
+        }
+        return scaled;
+    }
+
+    /**
+     * Convertit une frame en RGB dans la Mat interne.
+     *
+     * @param mat la frame en niveaux de gris, BGR ou BGRA
+     */
+    private void toRgb(Mat mat) {
+        switch (mat.channels()) {
+            case 1: Imgproc.cvtColor(mat, rgb, Imgproc.COLOR_GRAY2RGB); break;
+            case 4: Imgproc.cvtColor(mat, rgb, Imgproc.COLOR_BGRA2RGB); break;
+            default: Imgproc.cvtColor(mat, rgb, Imgproc.COLOR_BGR2RGB);
+        }
+    }
+
+    /**
+     * Écrit des pixels RGB dans l'image réutilisée, recréée seulement si la taille change.
+     *
+     * @param pixels les pixels RGB
+     * @param w la largeur
+     * @param h la hauteur
+     * @return l'image mise à jour
+     */
+    private Image write(byte[] pixels, int w, int h) {
+        if (image == null || (int) image.getWidth() != w || (int) image.getHeight() != h) {
+            image = new WritableImage(w, h);
+        }
+        image.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getByteRgbInstance(), pixels, 0, w * 3);
+        return image;
+    }
+
+    /**
+     * Aperçu converti en RGB, prêt à être écrit dans une image.
+     */
+    public static class Preview {
+        final byte[] pixels;
+        final int width;
+        final int height;
+
+        Preview(byte[] pixels, int width, int height) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Accès direct aux données natives des Mat (sun.misc.Unsafe, obtenu par réflexion, sans dépendance
+ * à la compilation) : copies de mémoire native à mémoire native et accès à des octets isolés,
+ * qui coûteraient sinon un appel JNI et un en-tête de Mat chacun.
+ * Si Unsafe n'est pas accessible (module jdk.unsupported absent), {@link #isUsable(Mat)} renvoie false
+ * et les appelants passent par les méthodes de Mat.
+ */
+final class NativeMemory {
+
+    private static final MethodHandle COPY_MEMORY;
+    private static final MethodHandle GET_BYTE;
+    private static final MethodHandle PUT_BYTE;
+
+    static {
+        MethodHandle copy = null, get = null, put = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            copy = lookup.findVirtual(unsafeClass, "copyMemory",
+                    MethodType.methodType(void.class, long.class, long.class, long.class)).bindTo(unsafe);
+            get = lookup.findVirtual(unsafeClass, "getByte",
+                    MethodType.methodType(byte.class, long.class)).bindTo(unsafe);
+            put = lookup.findVirtual(unsafeClass, "putByte",
+                    MethodType.methodType(void.class, long.class, byte.class)).bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Module jdk.unsupported absent ou fermé : les appelants passent par les Mat
+            copy = get = put = null;
+        }
+        COPY_MEMORY = copy;
+        GET_BYTE = get;
+        PUT_BYTE = put;
+    }
+
+    private NativeMemory() {
+    }
+
+    /**
+     * Indique si les données d'une Mat peuvent être lues et écrites directement :
+     * l'accès natif est disponible, et la Mat est continue, non vide, à canaux d'un octet.
+     *
+     * @param mat la Mat
+     * @return true si ses octets sont accessibles à partir de {@link Mat#dataAddr()}
+     */
+    static boolean isUsable(Mat mat) {
+        return PUT_BYTE != null && !mat.empty() && mat.isContinuous() && mat.depth() == CvType.CV_8U;
+    }
+
+    /**
+     * Copie un bloc de mémoire native.
+     *
+     * @param from l'adresse source
+     * @param to l'adresse destination
+     * @param bytes le nombre d'octets
+     */
+    static void copy(long from, long to, long bytes) {
+        try {
+            COPY_MEMORY.invokeExact(from, to, bytes);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Copie native impossible", e);
+        }
+    }
+
+    /**
+     * Lit un octet de mémoire native.
+     *
+     * @param address l'adresse de l'octet
+     * @return l'octet lu
+     */
+    static byte getByte(long address) {
+        try {
+            return (byte) GET_BYTE.invokeExact(address);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Lecture native impossible", e);
+        }
+    }
+
+    /**
+     * Écrit un octet en mémoire native.
+     *
+     * @param address l'adresse de l'octet
+     * @param value l'octet à écrire
+     */
+    static void putByte(long address, byte value) {
+        try {
+            PUT_BYTE.invokeExact(address, value);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Écriture native impossible", e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Tampon circulaire de lecture : un thread producteur décode et traite les frames
+ * en avance dans un nombre fixe de Mat recyclées, pendant que l'affichage se contente
+ * de récupérer la frame due à l'instant courant. Les frames en retard sont sautées
+ * au lieu de bloquer l'interface.
+ */
+public class PlaybackBuffer {
+
+    private final String videoPath;
+    private final int startIndex;
+    private final BlockingQueue<Frame> free;
+    private final BlockingQueue<Frame> ready;
+
+    private volatile FrameProcessor processor;
+    private volatile boolean finished = false;
+    private volatile RuntimeException error;
+    private Thread producer;
+
+    /**
+     * Construit un tampon de lecture. La vidéo est ouverte par le thread producteur,
+     * indépendamment de la VideoCapture utilisée pour la navigation.
+     *
+     * @param videoPath le chemin de la vidéo
+     * @param startIndex l'indice de la première frame à décoder
+     * @param processor le traitement à appliquer aux frames
+     * @param capacity le nombre de frames décodées à l'avance
+     */
+    public PlaybackBuffer(String videoPath, int startIndex, FrameProcessor processor, int capacity) {
+        this.videoPath = videoPath;
+        this.startIndex = startIndex;
+        this.processor = processor;
+        this.free = new ArrayBlockingQueue<>(capacity);
+        this.ready = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) free.add(new Frame());
+    }
+
+    /**
+     * Démarre le thread de décodage.
+     */
+    public void start() {
+        producer = new Thread(this::produce, "playback-decoder");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * Arrête le thread de décodage. La VideoCapture est libérée par le producteur lui-même.
+     */
+    public void stop() {
+        if (producer != null) producer.interrupt();
+    }
+
+    /**
+     * Change le traitement appliqué aux frames décodées à partir de maintenant.
+     *
+     * @param processor le nouveau traitement
+     */
+    public void setProcessor(FrameProcessor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Indique si toutes les frames de la vidéo ont été décodées et consommées,
+     * ou si le décodage s'est arrêté sur une erreur.
+     *
+     * @return true si la lecture est terminée
+     */
+    public boolean isFinished() {
+        return finished && ready.isEmpty();
+    }
+
+    /**
+     * Retourne l'erreur qui a arrêté le décodage, le cas échéant.
+     *
+     * @return l'exception levée par le traitement d'une frame, ou null
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * Récupère la frame la plus récente dont l'indice ne dépasse pas l'indice dû.
+     * Les frames plus anciennes, arrivées trop tard, sont rendues au producteur sans être affichées.
+     * La frame renvoyée doit être rendue avec {@link #release(Frame)} une fois affichée.
+     *
+     * @param dueIndex l'indice de la frame qui devrait être affichée maintenant
+     * @return la frame à afficher, ou null si aucune n'est encore prête
+     */
+    public Frame poll(int dueIndex) {
+        Frame latest = null;
+        Frame head;
+        while ((head = ready.peek()) != null && head.index <= dueIndex) {
+            ready.poll();
+            if (latest != null) free.offer(latest);
+            latest = head;
+        }
+        return latest;
+    }
+
+    /**
+     * Rend une frame au producteur pour qu'il la réutilise.
+     *
+     * @param frame la frame affichée
+     */
+    public void release(Frame frame) {
+        free.offer(frame);
+    }
+
+    /**
+     * Boucle du thread producteur : décode et traite les frames tant qu'il reste de la place.
+     * Une erreur de traitement arrête le décodage ; elle est transmise à l'affichage par {@link #getError()}.
+     */
+    private void produce() {
+        VideoCapture capture = new VideoCapture(videoPath);
+        try {
+            if (!capture.isOpened()) return;
+            capture.set(Videoio.CAP_PROP_POS_FRAMES, startIndex);
+
+            int index = startIndex;
+            while (!Thread.currentThread().isInterrupted()) {
+                Frame frame = free.take();
+                if (!capture.read(frame.raw) || frame.raw.empty()) {
+                    free.offer(frame);
+                    break;
+                }
+                frame.index = index++;
+                try {
+                    processor.process(frame.raw, frame.processed, frame.index);
+                } catch (RuntimeException e) {
+                    error = e;
+                    free.offer(frame);
+                    break;
+                }
+                ready.put(frame);
+            }
+        } catch (InterruptedException e) {
+            // Arrêt demandé
+        } finally {
+            finished = true;
+            capture.release();
+        }
+    }
+
+    /**
+     * Frame décodée (brute) et sa version traitée, avec son indice dans la vidéo.
+     */
+    public static class Frame {
+        public final Mat raw = new Mat();
+        public final Mat processed = new Mat();
+        public int index;
+    }
+}
@@ -0,0 +1,129 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Planificateur de rendus d'aperçu : les demandes rapprochées (frappe dans un champ, navigation rapide)
+ * sont regroupées, seule la plus récente est calculée sur un thread de rendu dédié, et un résultat
+ * dépassé par une demande plus récente est abandonné au lieu d'être affiché.
+ * Aucune demande obsolète n'est donc mise en file.
+ */
+public class RenderScheduler {
+
+    /**
+     * Délai par défaut pendant lequel les demandes successives sont regroupées, en millisecondes.
+     */
+    public static final long DEFAULT_DEBOUNCE_MS = 40;
+
+    private final Executor publisher;
+    private final long debounceMs;
+    private final ScheduledExecutorService renderer;
+    private final AtomicLong latest = new AtomicLong();
+
+    private Request<?> pending;
+    private boolean scheduled = false;
+
+    /**
+     * Construit un planificateur.
+     *
+     * @param publisher exécute la publication des résultats (par exemple Platform::runLater)
+     * @param debounceMs le délai de regroupement des demandes, en millisecondes
+     */
+    public RenderScheduler(Executor publisher, long debounceMs) {
+        this.publisher = publisher;
+        this.debounceMs = debounceMs;
+        this.renderer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "preview-render");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Demande un rendu. Il remplace toute demande pas encore commencée ; s'il est dépassé
+     * par une demande plus récente avant d'être publié, son résultat est abandonné.
+     *
+     * @param render le calcul, exécuté sur le thread de rendu (peut renvoyer null pour ne rien publier)
+     * @param publish reçoit le résultat, via le publieur
+     * @param <T> le type du résultat
+     */
+    public <T> void request(Callable<T> render, Consumer<T> publish) {
+        Request<T> request = new Request<>(latest.incrementAndGet(), render, publish);
+        synchronized (this) {
+            pending = request;
+            if (!scheduled) {
+                scheduled = true;
+                renderer.schedule(this::drain, debounceMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Exécute une tâche sur le thread de rendu, après les rendus déjà commencés
+     * (par exemple pour libérer des ressources qu'ils utilisent).
+     *
+     * @param task la tâche
+     */
+    public void execute(Runnable task) {
+        renderer.execute(task);
+    }
+
+    /**
+     * Boucle du thread de rendu : calcule la demande la plus récente jusqu'à ce qu'il n'y en ait plus.
+     */
+    private void drain() {
+        while (true) {
+            Request<?> request;
+            synchronized (this) {
+                request = pending;
+                pending = null;
+                if (request == null) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            request.run();
+        }
+    }
+
+    /**
+     * Demande de rendu numérotée.
+     *
+     * @param <T> le type du résultat
+     */
+    private class Request<T> {
+        final long generation;
+        final Callable<T> render;
+        final Consumer<T> publish;
+
+        Request(long generation, Callable<T> render, Consumer<T> publish) {
+            this.generation = generation;
+            this.render = render;
+            this.publish = publish;
+        }
+
+        /**
+         * Calcule le rendu puis le publie, sauf s'il a été dépassé entre-temps.
+         */
+        void run() {
+            T result;
+            try {
+                result = render.call();
+            } catch (Exception e) {
+                e.printStackTrace();
+                return;
+            }
+            if (result == null || generation != latest.get()) return;
+            publisher.execute(() -> {
+                // Une demande a pu arriver pendant le passage vers le thread de publication
+                if (generation == latest.get()) publish.accept(result);
+            });
+        }
+    }
+}
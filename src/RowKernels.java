@@ -0,0 +1,68 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+/**
+ * Noyaux de calcul sur des lignes d'octets non signés, au cœur des méthodes de cassage de clé.
+ * Deux implémentations donnent des résultats identiques au bit près : une version vectorisée
+ * (jdk.incubator.vector) et une version scalaire. La première est choisie au démarrage si le module
+ * est disponible (option --add-modules jdk.incubator.vector), la seconde sinon ; la propriété
+ * système videoscrambler.scalarKernels force la version scalaire.
+ */
+public interface RowKernels {
+
+    /**
+     * Implémentation retenue au démarrage.
+     */
+    RowKernels INSTANCE = Selector.select();
+
+    /**
+     * Somme des différences absolues entre deux suites d'octets non signés.
+     *
+     * @param a le premier tableau
+     * @param aOffset le début de la première suite
+     * @param b le second tableau (éventuellement le même que a)
+     * @param bOffset le début de la seconde suite
+     * @param length le nombre d'octets comparés
+     * @return la somme des |a[i] - b[i]|
+     */
+    long sumAbsDiff(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    /**
+     * Calcule les sommes nécessaires au coefficient de Pearson entre deux suites d'octets non signés :
+     * somme de x, de y, de x², de y² et de x*y.
+     *
+     * @param a le premier tableau
+     * @param aOffset le début de la première suite
+     * @param b le second tableau (éventuellement le même que a)
+     * @param bOffset le début de la seconde suite
+     * @param length le nombre d'octets
+     * @param sums tableau de 5 cases recevant les sommes, dans l'ordre ci-dessus
+     */
+    void pearsonSums(byte[] a, int aOffset, byte[] b, int bOffset, int length, long[] sums);
+
+    /**
+     * Choix de l'implémentation des noyaux au démarrage.
+     */
+    final class Selector {
+
+        private Selector() {
+        }
+
+        /**
+         * Charge la version vectorisée si possible, sinon la version scalaire.
+         *
+         * @return l'implémentation à utiliser
+         */
+        static RowKernels select() {
+            if (!Boolean.getBoolean("videoscrambler.scalarKernels")) {
+                try {
+                    // Chargement par réflexion : sans le module incubateur, seule cette ligne échoue
+                    return (RowKernels) Class.forName("VectorRowKernels").getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    // Module jdk.incubator.vector absent (LinkageError) ou vecteurs trop courts
+                    // (UnsupportedOperationException, enveloppée dans une InvocationTargetException) : repli scalaire
+                }
+            }
+            return new ScalarRowKernels();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Plan de permutation des lignes pour une hauteur d'image et une clé (r, s) données.
+ * La décomposition en blocs de puissances de 2 et la correspondance
+ * ligne source / ligne destination sont calculées une seule fois à la construction,
+ * puis réutilisées pour chaque frame, dans les deux sens (chiffrement et déchiffrement).
+ * Les instances sont immuables et peuvent être partagées entre threads.
+ */
+public final class RowPermutation {
+
+    /**
+     * Nombre maximal de plans conservés dans le cache.
+     */
+    private static final int CACHE_SIZE = 64;
+
+    /**
+     * Cache LRU borné des plans, indexé par (hauteur, r, s).
+     */
+    private static final Map<Long, RowPermutation> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RowPermutation> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Taille de frame (en octets) à partir de laquelle la permutation est répartie
+     * sur plusieurs cœurs. Réglable par la propriété système videoscrambler.parallelThreshold.
+     */
+    private static volatile long parallelThreshold = Long.getLong("videoscrambler.parallelThreshold", 8L << 20);
+
+    /**
+     * Vrai pour les threads qui occupent déjà un cœur chacun (threads d'export) : leurs permutations
+     * restent dans le thread appelant, le pool commun ne ferait qu'ajouter des threads aux leurs.
+     */
+    private static final ThreadLocal<Boolean> SEQUENTIAL = ThreadLocal.withInitial(() -> false);
+
+    private final int height;
+    private final int r;
+    private final int s;
+
+    /**
+     * destRows[i] : ligne de l'image chiffrée dans laquelle est placée la ligne source i.
+     */
+    private final int[] destRows;
+
+    /**
+     * Plages de lignes contiguës à copier en un seul bloc, sous forme de triplets
+     * (ligne source, ligne destination, nombre de lignes).
+     */
+    private final int[] runs;
+
+    /**
+     * Construit le plan de permutation pour une hauteur et une clé données.
+     *
+     * @param height la hauteur de l'image
+     * @param r le paramètre r de la clé (0-255)
+     * @param s le paramètre s de la clé (0-127)
+     */
+    private RowPermutation(int height, int r, int s) {
+        this.height = height;
+        this.r = r;
+        this.s = s;
+        this.destRows = new int[height];
+
+        int step = 2 * s + 1;
+        int startLine = 0;
+        int blockSize, blockMask;
+
+        while (startLine < height) {
+            blockSize = Encryption.largestPowerOf2(height - startLine);
+            blockMask = blockSize - 1;
+
+            for (int i = 0; i < blockSize; i++) {
+                destRows[startLine + i] = startLine + ((r + step * i) & blockMask);
+            }
+            startLine += blockSize;
+        }
+
+        // Regroupement des lignes consécutives qui restent consécutives après permutation
+        int[] tmpRuns = new int[3 * height];
+        int runCount = 0;
+        int i = 0;
+        while (i < height) {
+            int length = 1;
+            while (i + length < height && destRows[i + length] == destRows[i] + length) {
+                length++;
+            }
+            tmpRuns[3 * runCount] = i;
+            tmpRuns[3 * runCount + 1] = destRows[i];
+            tmpRuns[3 * runCount + 2] = length;
+            runCount++;
+            i += length;
+        }
+        this.runs = Arrays.copyOf(tmpRuns, 3 * runCount);
+    }
+
+    /**
+     * Retourne le plan de permutation pour (height, r, s), en le construisant si nécessaire.
+     *
+     * @param height la hauteur de l'image
+     * @param r le paramètre r de la clé (0-255)
+     * @param s le paramètre s de la clé (0-127)
+     * @return le plan de permutation correspondant
+     */
+    public static RowPermutation of(int height, int r, int s) {
+        long cacheKey = ((long) height << 32) | ((long) (r & 0xFFFF) << 16) | (s & 0xFFFF);
+        synchronized (CACHE) {
+            RowPermutation plan = CACHE.get(cacheKey);
+            if (plan == null) {
+                plan = new RowPermutation(height, r, s);
+                CACHE.put(cacheKey, plan);
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * Retourne la taille de frame à partir de laquelle la permutation est parallélisée.
+     *
+     * @return le seuil en octets
+     */
+    public static long getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Modifie la taille de frame à partir de laquelle la permutation est parallélisée.
+     * Long.MAX_VALUE désactive le mode parallèle.
+     *
+     * @param bytes le seuil en octets
+     */
+    public static void setParallelThreshold(long bytes) {
+        parallelThreshold = bytes;
+    }
+
+    /**
+     * Enveloppe la tâche d'un thread parmi plusieurs qui se partagent déjà les cœurs :
+     * les permutations faites par la tâche ne sont jamais réparties sur le pool commun.
+     *
+     * @param task la tâche du thread
+     * @return la tâche, exécutée sans permutation parallèle
+     */
+    public static Runnable sequential(Runnable task) {
+        return () -> {
+            SEQUENTIAL.set(true);
+            try {
+                task.run();
+            } finally {
+                SEQUENTIAL.remove();
+            }
+        };
+    }
+
+    /**
+     * Retourne la hauteur d'image couverte par ce plan.
+     *
+     * @return la hauteur en lignes
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Retourne la clé correspondant à ce plan.
+     *
+     * @return la clé (r, s)
+     */
+    public Key getKey() {
+        return new Key(r, s);
+    }
+
+    /**
+     * Retourne la ligne chiffrée dans laquelle est placée une ligne source.
+     *
+     * @param sourceRow l'indice de la ligne dans l'image claire
+     * @return l'indice de la ligne dans l'image chiffrée
+     */
+    public int destRow(int sourceRow) {
+        return destRows[sourceRow];
+    }
+
+    /**
+     * Applique la permutation de chiffrement sur des données brutes.
+     *
+     * @param source les données de l'image claire
+     * @param dest le tableau recevant l'image chiffrée (distinct de source)
+     * @param rowSize la taille d'une ligne en octets
+     */
+    public void encrypt(byte[] source, byte[] dest, int rowSize) {
+        forEachRun((long) height * rowSize, (first, last) -> {
+            for (int i = 3 * first; i < 3 * last; i += 3) {
+                System.arraycopy(source, runs[i] * rowSize, dest, runs[i + 1] * rowSize, runs[i + 2] * rowSize);
+            }
+        });
+    }
+
+    /**
+     * Applique la permutation inverse (déchiffrement) sur des données brutes.
+     *
+     * @param source les données de l'image chiffrée
+     * @param dest le tableau recevant l'image déchiffrée (distinct de source)
+     * @param rowSize la taille d'une ligne en octets
+     */
+    public void decrypt(byte[] source, byte[] dest, int rowSize) {
+        forEachRun((long) height * rowSize, (first, last) -> {
+            for (int i = 3 * first; i < 3 * last; i += 3) {
+                System.arraycopy(source, runs[i + 1] * rowSize, dest, runs[i] * rowSize, runs[i + 2] * rowSize);
+            }
+        });
+    }
+
+    /**
+     * Applique la permutation de chiffrement directement entre deux Mat, sans passer
+     * par le tas Java : chaque plage de lignes est copiée de mémoire native à mémoire native.
+     *
+     * @param source l'image claire
+     * @param dest la Mat recevant l'image chiffrée (distincte de source, déjà allouée à la même taille)
+     */
+    public void encrypt(Mat source, Mat dest) {
+        permute(source, dest, 0, 1);
+    }
+
+    /**
+     * Applique la permutation inverse (déchiffrement) directement entre deux Mat.
+     *
+     * @param source l'image chiffrée
+     * @param dest la Mat recevant l'image déchiffrée (distincte de source, déjà allouée à la même taille)
+     */
+    public void decrypt(Mat source, Mat dest) {
+        permute(source, dest, 1, 0);
+    }
+
+    /**
+     * Copie chaque plage de lignes d'une Mat vers une autre. Si les deux Mat sont continues,
+     * les plages sont copiées directement entre leurs données natives, sans créer d'objet par plage ;
+     * sinon, via des en-têtes de lignes partageant leurs données.
+     *
+     * @param source la Mat source
+     * @param dest la Mat destination
+     * @param fromIndex position, dans un triplet de plage, de la ligne lue (0 : ligne claire, 1 : ligne chiffrée)
+     * @param toIndex position, dans un triplet de plage, de la ligne écrite
+     */
+    private void permute(Mat source, Mat dest, int fromIndex, int toIndex) {
+        long frameBytes = source.total() * source.elemSize();
+        if (NativeMemory.isUsable(source) && NativeMemory.isUsable(dest)
+                && source.rows() == height && dest.rows() == height
+                && dest.total() * dest.elemSize() == frameBytes) {
+            long from = source.dataAddr();
+            long to = dest.dataAddr();
+            long rowSize = frameBytes / height;
+            forEachRun(frameBytes, (first, last) -> {
+                for (int i = 3 * first; i < 3 * last; i += 3) {
+                    NativeMemory.copy(from + runs[i + fromIndex] * rowSize, to + runs[i + toIndex] * rowSize, runs[i + 2] * rowSize);
+                }
+            });
+            return;
+        }
+        forEachRun(frameBytes, (first, last) -> {
+            for (int i = 3 * first; i < 3 * last; i += 3) {
+                copyRows(source, runs[i + fromIndex], dest, runs[i + toIndex], runs[i + 2]);
+            }
+        });
+    }
+
+    /**
+     * Copie une plage de lignes d'une Mat vers une autre via des en-têtes partageant leurs données.
+     *
+     * @param source la Mat source
+     * @param sourceRow la première ligne source
+     * @param dest la Mat destination
+     * @param destRow la première ligne destination
+     * @param count le nombre de lignes à copier
+     */
+    private static void copyRows(Mat source, int sourceRow, Mat dest, int destRow, int count) {
+        Mat from = source.rowRange(sourceRow, sourceRow + count);
+        Mat to = dest.rowRange(destRow, destRow + count);
+        from.copyTo(to);
+        // Libération immédiate des en-têtes, sans attendre le ramasse-miettes
+        from.release();
+        to.release();
+    }
+
+    /**
+     * Applique une copie à toutes les plages de lignes, en parallèle sur le pool ForkJoin
+     * commun si la frame dépasse le seuil, sinon (ou depuis une tâche {@link #sequential}) dans le thread appelant.
+     *
+     * @param frameBytes la taille de la frame en octets
+     * @param copier la copie à appliquer sur chaque intervalle de plages
+     */
+    private void forEachRun(long frameBytes, RunCopier copier) {
+        int runCount = runs.length / 3;
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (frameBytes < parallelThreshold || runCount < 2 || parallelism < 2 || SEQUENTIAL.get()) {
+            copier.copy(0, runCount);
+            return;
+        }
+        // Quelques tâches par cœur pour équilibrer la charge
+        int grain = Math.max(1, runCount / (4 * parallelism));
+        ForkJoinPool.commonPool().invoke(new CopyTask(copier, 0, runCount, grain));
+    }
+
+    /**
+     * Copie d'un intervalle de plages de lignes [first, last).
+     */
+    @FunctionalInterface
+    private interface RunCopier {
+        void copy(int first, int last);
+    }
+
+    /**
+     * Tâche ForkJoin découpant récursivement un intervalle de plages de lignes.
+     */
+    private static class CopyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RunCopier copier;
+        private final int first, last, grain;
+
+        CopyTask(RunCopier copier, int first, int last, int grain) {
+            this.copier = copier;
+            this.first = first;
+            this.last = last;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first <= grain) {
+                copier.copy(first, last);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new CopyTask(copier, first, middle, grain), new CopyTask(copier, middle, last, grain));
+        }
+    }
+}
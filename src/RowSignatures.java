@@ -0,0 +1,66 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Index de signatures de lignes d'une frame : chaque ligne est réduite à un profil
+ * de quelques dizaines de valeurs (moyennes de bandes de colonnes), calculé en une seule passe.
+ * Les candidats de clé sont départagés sur ces signatures compactes, et les distances
+ * pleine largeur ne sont calculées que pour confirmer les meilleurs d'entre eux.
+ */
+public class RowSignatures {
+
+    /**
+     * Largeur par défaut d'une signature, en valeurs par ligne.
+     */
+    public static final int DEFAULT_WIDTH = 64;
+
+    private final byte[] data;
+    private final int width;
+
+    private RowSignatures(byte[] data, int width) {
+        this.data = data;
+        this.width = width;
+    }
+
+    /**
+     * Construit les signatures des premières lignes d'une image en niveaux de gris.
+     * La réduction horizontale (INTER_AREA) moyenne chaque bande de colonnes.
+     *
+     * @param gray l'image en niveaux de gris (CV_8UC1)
+     * @param rows le nombre de lignes à indexer
+     * @param signatureWidth la largeur voulue d'une signature (bornée par la largeur de l'image)
+     * @return les signatures
+     */
+    public static RowSignatures of(Mat gray, int rows, int signatureWidth) {
+        int width = Math.min(signatureWidth, gray.cols());
+        Mat block = gray.rowRange(0, rows);
+        Mat reduced = new Mat();
+        Imgproc.resize(block, reduced, new Size(width, rows), 0, 0, Imgproc.INTER_AREA);
+        byte[] data = new byte[rows * width];
+        reduced.get(0, 0, data);
+        block.release();
+        reduced.release();
+        return new RowSignatures(data, width);
+    }
+
+    /**
+     * Retourne les signatures de toutes les lignes, les unes à la suite des autres.
+     *
+     * @return le tableau des signatures (rows * width octets)
+     */
+    public byte[] data() {
+        return data;
+    }
+
+    /**
+     * Retourne la largeur d'une signature.
+     *
+     * @return le nombre de valeurs par ligne
+     */
+    public int width() {
+        return width;
+    }
+}
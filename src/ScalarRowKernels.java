@@ -0,0 +1,37 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+/**
+ * Implémentation scalaire des noyaux de calcul sur les lignes, utilisée
+ * lorsque l'API Vector n'est pas disponible.
+ */
+public class ScalarRowKernels implements RowKernels {
+
+    @Override
+    public long sumAbsDiff(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += Math.abs((a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF));
+        }
+        return sum;
+    }
+
+    @Override
+    public void pearsonSums(byte[] a, int aOffset, byte[] b, int bOffset, int length, long[] sums) {
+        long sumX = 0, sumY = 0, sumX2 = 0, sumY2 = 0, sumXY = 0;
+        int xi, yi;
+        for (int i = 0; i < length; i++) {
+            xi = a[aOffset + i] & 0xFF;
+            yi = b[bOffset + i] & 0xFF;
+            sumX += xi;
+            sumY += yi;
+            sumX2 += xi * xi;
+            sumY2 += yi * yi;
+            sumXY += xi * yi;
+        }
+        sums[0] = sumX;
+        sums[1] = sumY;
+        sums[2] = sumX2;
+        sums[3] = sumY2;
+        sums[4] = sumXY;
+    }
+}
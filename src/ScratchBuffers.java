@@ -0,0 +1,44 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+/**
+ * Tampons de travail réutilisables pour le chiffrement et le déchiffrement.
+ * Contient les deux tableaux (source et destination) nécessaires à la permutation
+ * des lignes côté Java, afin d'éviter toute allocation par frame.
+ * Une instance n'est pas thread-safe : chaque thread doit utiliser la sienne.
+ */
+public class ScratchBuffers {
+
+    private byte[] source = new byte[0];
+    private byte[] dest = new byte[0];
+
+    /**
+     * Prépare les tampons pour une frame de la taille donnée.
+     * Les tableaux ne sont réalloués que si la taille change.
+     *
+     * @param size la taille d'une frame en octets
+     */
+    public void ensureSize(int size) {
+        if (source.length != size) {
+            source = new byte[size];
+            dest = new byte[size];
+        }
+    }
+
+    /**
+     * Retourne le tampon recevant les données de la frame d'entrée.
+     *
+     * @return le tampon source
+     */
+    public byte[] source() {
+        return source;
+    }
+
+    /**
+     * Retourne le tampon recevant les données permutées.
+     *
+     * @return le tampon destination
+     */
+    public byte[] dest() {
+        return dest;
+    }
+}
@@ -0,0 +1,414 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.VideoWriter;
+import org.opencv.videoio.Videoio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Export d'une vidéo traitée découpée en plages de frames contiguës, traitées en parallèle.
+ * Chaque plage a son propre VideoCapture (positionné sur sa première frame), son propre processeur
+ * et son propre fichier segment : le décodage et l'encodage sont parallélisés comme le traitement,
+ * ce que le pipeline à un seul décodeur ({@link ExportPipeline}) ne permet pas.
+ * Les frames gardent leur numéro dans la vidéo complète, le mode dynamique reste donc identique.
+ * <p>
+ * Les segments sont ensuite assemblés sans perte : par ffmpeg (concaténation sans réencodage)
+ * s'il est disponible, sinon en les relisant pour les réécrire en HuffYUV, lui aussi lossless.
+ * <p>
+ * L'export est repris là où il s'est arrêté : chaque segment terminé est noté dans un fichier de reprise
+ * ({@link ExportCheckpoint}) à côté de la sortie, et un export interrompu puis relancé avec la même source
+ * et les mêmes paramètres ne recalcule que les segments manquants. Les segments et le fichier de reprise
+ * ne sont supprimés qu'une fois la sortie assemblée.
+ */
+public class SegmentedExport {
+
+    /**
+     * Nombre de segments par défaut : un par cœur.
+     */
+    public static final int DEFAULT_SEGMENTS = Integer.getInteger("videoscrambler.exportSegments",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Taille minimale d'un segment, en frames : en dessous, le coût d'ouverture et de positionnement
+     * d'un VideoCapture n'est plus amorti.
+     */
+    private static final int MIN_SEGMENT_FRAMES = 64;
+
+    /**
+     * Taille maximale d'un segment, en frames (une minute à 25 fps) : c'est le travail perdu au plus
+     * par segment en cours lors d'une interruption. Une longue vidéo a donc plus de segments que de threads.
+     */
+    private static final int MAX_SEGMENT_FRAMES = 1500;
+
+    /**
+     * Délai maximal accordé à ffmpeg pour assembler les segments, en minutes.
+     */
+    private static final long CONCAT_TIMEOUT_MINUTES = 30;
+
+    /**
+     * Fin de plage du dernier segment : il lit la source jusqu'au bout, le nombre de frames
+     * annoncé par le conteneur pouvant être inexact.
+     */
+    private static final int UNTIL_END = Integer.MAX_VALUE;
+
+    private final String sourcePath;
+    private final String outPath;
+    private final Supplier<FrameProcessor> processors;
+    private final String configuration;
+    private final int segments;
+
+    /**
+     * Construit un export segmenté.
+     *
+     * @param sourcePath le chemin de la vidéo source
+     * @param outPath le chemin du fichier de sortie
+     * @param processors fournit le traitement à appliquer, une instance par segment
+     * @param configuration décrit le traitement (mode et paramètres) : un export interrompu n'est repris
+     *                      que s'il a été lancé avec la même description
+     * @param segments le nombre maximal de segments traités en parallèle
+     */
+    public SegmentedExport(String sourcePath, String outPath, Supplier<FrameProcessor> processors,
+                           String configuration, int segments) {
+        this.sourcePath = sourcePath;
+        this.outPath = outPath;
+        this.processors = processors;
+        this.configuration = configuration;
+        this.segments = Math.max(1, segments);
+    }
+
+    /**
+     * Exécute l'export complet, en reprenant les segments terminés par un export précédent interrompu.
+     * Si le nombre de frames de la source est inconnu, ou trop faible pour être découpé,
+     * l'export passe par {@link ExportPipeline} (sans reprise).
+     *
+     * @param progress reçoit l'avancement (entre 0 et 1), appelé depuis plusieurs threads
+     * @return le nombre de frames écrites, ou -1 si la source ou la destination n'a pas pu être ouverte
+     * @throws InterruptedException si le thread appelant est interrompu
+     * @throws ExecutionException si le traitement d'un segment ou leur assemblage a échoué
+     */
+    public long run(DoubleConsumer progress) throws InterruptedException, ExecutionException {
+        VideoCapture probe = new VideoCapture(sourcePath);
+        if (!probe.isOpened()) {
+            System.err.println("Erreur: Impossible d'ouvrir la vidéo source pour l'export.");
+            return -1;
+        }
+        int w = (int) probe.get(Videoio.CAP_PROP_FRAME_WIDTH);
+        int h = (int) probe.get(Videoio.CAP_PROP_FRAME_HEIGHT);
+        double fps = probe.get(Videoio.CAP_PROP_FPS);
+        if (fps <= 0) fps = 30.0;
+        int total = (int) probe.get(Videoio.CAP_PROP_FRAME_COUNT);
+        probe.release();
+
+        int count = Math.min(Math.max(segments, (total + MAX_SEGMENT_FRAMES - 1) / MAX_SEGMENT_FRAMES),
+                total / MIN_SEGMENT_FRAMES);
+        if (count <= 1) {
+            return new ExportPipeline(sourcePath, outPath, processors.get(), ExportPipeline.DEFAULT_WORKERS).run(progress);
+        }
+
+        List<File> parts = new ArrayList<>();
+        for (int i = 0; i < count; i++) parts.add(partFile(i));
+
+        File source = new File(sourcePath).getAbsoluteFile();
+        String fingerprint = source.getPath() + "|" + source.length() + "|" + source.lastModified()
+                + "|" + total + "|" + count + "|" + w + "x" + h + "|" + fps + "|" + configuration;
+        ExportCheckpoint checkpoint = new ExportCheckpoint(new File(outPath + ".checkpoint"), fingerprint);
+        // Segments d'un autre export (autre source, autres paramètres, autre découpage) : supprimés
+        if (!checkpoint.isResumed()) deleteParts(checkpoint.staleSegments(), count);
+        boolean completed = false;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(segments, count), r -> {
+            // Un thread par cœur : les permutations de chaque frame restent dans son thread
+            Thread t = new Thread(RowPermutation.sequential(r), "export-segment");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            AtomicLong done = new AtomicLong();
+            Size size = new Size(w, h);
+            double finalFps = fps;
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                // Plages contiguës de tailles égales à une frame près
+                int start = (int) ((long) total * i / count);
+                int end = i == count - 1 ? UNTIL_END : (int) ((long) total * (i + 1) / count);
+                File part = parts.get(i);
+                int segment = i;
+
+                long resumed = checkpoint.completedFrames(segment);
+                if (resumed >= 0 && isComplete(part, resumed)) {
+                    done.addAndGet(resumed);
+                    results.add(CompletableFuture.completedFuture(resumed));
+                    continue;
+                }
+                results.add(executor.submit(() -> {
+                    long written = exportRange(start, end, part, size, finalFps, done, total, progress);
+                    // Le segment n'est noté qu'une fois son fichier fermé
+                    if (written >= 0) checkpoint.markCompleted(segment, written);
+                    return written;
+                }));
+            }
+            progress.accept((double) done.get() / total);
+
+            long frames = 0;
+            for (int i = 0; i < count; i++) {
+                long written = results.get(i).get();
+                if (written < 0) return -1;
+                frames += written;
+            }
+
+            if (!concat(parts, size, fps, frames)) {
+                throw new ExecutionException(new IOException("Impossible d'assembler les segments dans " + outPath));
+            }
+            completed = true;
+            return frames;
+        } finally {
+            executor.shutdownNow();
+            // En cas d'échec ou d'interruption, les segments terminés restent pour la reprise
+            if (completed) {
+                for (File part : parts) part.delete();
+                checkpoint.delete();
+            }
+        }
+    }
+
+    /**
+     * Traite une plage de frames dans son propre fichier segment.
+     *
+     * @param start le numéro de la première frame (incluse)
+     * @param end le numéro de la dernière frame (exclue), ou {@link #UNTIL_END} pour lire jusqu'à la fin
+     * @param part le fichier segment
+     * @param size la taille des frames
+     * @param fps la cadence de la vidéo
+     * @param done le compteur de frames écrites, partagé par les segments
+     * @param total le nombre total de frames annoncé, pour l'avancement
+     * @param progress reçoit l'avancement global
+     * @return le nombre de frames écrites, ou -1 si la source ou le segment n'a pas pu être ouvert
+     * @throws IOException si la plage n'a pas pu être lue en entier (les segments ne seraient plus contigus)
+     * @throws InterruptedException si l'export est interrompu (le segment n'est alors pas noté comme terminé)
+     */
+    private long exportRange(int start, int end, File part, Size size, double fps,
+                             AtomicLong done, int total, DoubleConsumer progress) throws IOException, InterruptedException {
+        VideoCapture cap = new VideoCapture(sourcePath);
+        if (!cap.isOpened()) {
+            System.err.println("Erreur: Impossible d'ouvrir la vidéo source pour le segment commençant à la frame " + start);
+            return -1;
+        }
+        VideoWriter writer = new VideoWriter(part.getPath(), VideoWriter.fourcc('H','F','Y','U'), fps, size, true);
+        if (!writer.isOpened()) {
+            System.err.println("Erreur: Impossible de créer le segment " + part + " avec HFYU. Codec manquant ?");
+            cap.release();
+            return -1;
+        }
+
+        FrameProcessor processor = processors.get();
+        Mat frame = new Mat();
+        Mat processed = new Mat();
+        try {
+            seek(cap, start);
+            long index = start;
+            for (; index < end; index++) {
+                if (Thread.interrupted()) throw new InterruptedException();
+                if (!cap.read(frame) || frame.empty()) break;
+                processor.process(frame, processed, index);
+                writer.write(processed);
+
+                if (done.incrementAndGet() % 5 == 0) {
+                    progress.accept(Math.min(1.0, (double) done.get() / total));
+                }
+            }
+            // Seul le dernier segment s'arrête à la fin de la source
+            if (index < end && end != UNTIL_END) {
+                throw new IOException("Lecture interrompue à la frame " + index + " au lieu de " + end);
+            }
+            return index - start;
+        } finally {
+            frame.release();
+            processed.release();
+            writer.release();
+            cap.release();
+        }
+    }
+
+    /**
+     * Positionne la source sur une frame. Si le positionnement direct n'est pas exact
+     * (certains conteneurs ne le permettent pas), la source est relue depuis le début.
+     *
+     * @param cap la source
+     * @param index le numéro de la frame
+     */
+    private static void seek(VideoCapture cap, int index) {
+        if (index == 0) return;
+        cap.set(Videoio.CAP_PROP_POS_FRAMES, index);
+        if ((int) cap.get(Videoio.CAP_PROP_POS_FRAMES) == index) return;
+
+        cap.set(Videoio.CAP_PROP_POS_FRAMES, 0);
+        for (int i = 0; i < index && cap.grab(); i++) {
+            // Les frames précédant la plage sont passées sans être décodées
+        }
+    }
+
+    /**
+     * Assemble les segments dans le fichier de sortie, et vérifie que celui-ci contient
+     * toutes les frames des segments.
+     *
+     * @param parts les segments, dans l'ordre
+     * @param size la taille des frames
+     * @param fps la cadence de la vidéo
+     * @param expected le nombre total de frames des segments
+     * @return true si le fichier de sortie a été écrit en entier
+     * @throws InterruptedException si le thread appelant est interrompu
+     */
+    private boolean concat(List<File> parts, Size size, double fps, long expected) throws InterruptedException {
+        if (concatWithFfmpeg(parts)) {
+            long written = frameCount(new File(outPath));
+            if (written == expected) return true;
+            System.err.println("Erreur: ffmpeg a écrit " + written + " frames au lieu de " + expected
+                    + ", assemblage par réencodage.");
+        }
+
+        // Sans ffmpeg : HuffYUV étant lossless, relire et réécrire les frames ne modifie aucun pixel
+        VideoWriter writer = new VideoWriter(outPath, VideoWriter.fourcc('H','F','Y','U'), fps, size, true);
+        if (!writer.isOpened()) {
+            System.err.println("Erreur: Impossible de créer le fichier de sortie avec HFYU. Codec manquant ?");
+            return false;
+        }
+        Mat frame = new Mat();
+        long written = 0;
+        try {
+            for (File part : parts) {
+                VideoCapture cap = new VideoCapture(part.getPath());
+                if (!cap.isOpened()) {
+                    System.err.println("Erreur: Impossible d'ouvrir le segment " + part);
+                    cap.release();
+                    return false;
+                }
+                while (cap.read(frame) && !frame.empty()) {
+                    writer.write(frame);
+                    written++;
+                }
+                cap.release();
+            }
+        } finally {
+            frame.release();
+            writer.release();
+        }
+        if (written != expected) {
+            System.err.println("Erreur: " + written + " frames assemblées au lieu de " + expected);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Vérifie qu'un segment noté comme terminé est toujours intact : son conteneur annonce
+     * le nombre de frames noté et sa dernière frame se lit (un fichier tronqué ou remplacé est recalculé).
+     *
+     * @param part le fichier segment
+     * @param frames le nombre de frames noté dans le fichier de reprise
+     * @return true si le segment peut être repris tel quel
+     */
+    private static boolean isComplete(File part, long frames) {
+        if (!part.isFile() || frameCount(part) != frames) return false;
+        if (frames == 0) return true;
+
+        VideoCapture cap = new VideoCapture(part.getPath());
+        Mat frame = new Mat();
+        try {
+            cap.set(Videoio.CAP_PROP_POS_FRAMES, frames - 1);
+            return cap.read(frame) && !frame.empty();
+        } finally {
+            frame.release();
+            cap.release();
+        }
+    }
+
+    /**
+     * Supprime les fichiers segments d'un export précédent : ceux notés par son fichier de reprise
+     * et ceux du découpage courant. Les autres fichiers du dossier ne sont jamais touchés.
+     *
+     * @param staleSegments les segments notés par le fichier de reprise écarté
+     * @param count le nombre de segments de l'export courant
+     */
+    private void deleteParts(List<Integer> staleSegments, int count) {
+        for (int segment : staleSegments) partFile(segment).delete();
+        for (int i = 0; i < count; i++) partFile(i).delete();
+    }
+
+    /**
+     * Nombre de frames d'une vidéo, d'après son conteneur.
+     *
+     * @param video la vidéo
+     * @return le nombre de frames, ou -1 si la vidéo n'a pas pu être ouverte
+     */
+    private static long frameCount(File video) {
+        VideoCapture cap = new VideoCapture(video.getPath());
+        if (!cap.isOpened()) return -1;
+        long count = (long) cap.get(Videoio.CAP_PROP_FRAME_COUNT);
+        cap.release();
+        return count;
+    }
+
+    /**
+     * Assemble les segments par le démultiplexeur concat de ffmpeg, sans réencodage.
+     *
+     * @param parts les segments, dans l'ordre
+     * @return true si ffmpeg est disponible et a réussi
+     * @throws InterruptedException si le thread appelant est interrompu
+     */
+    private boolean concatWithFfmpeg(List<File> parts) throws InterruptedException {
+        File list = new File(outPath + ".segments.txt");
+        Process ffmpeg = null;
+        try {
+            try (PrintWriter out = new PrintWriter(list, StandardCharsets.UTF_8)) {
+                for (File part : parts) {
+                    out.println("file '" + part.getAbsolutePath().replace("'", "'\\''") + "'");
+                }
+            }
+            ffmpeg = new ProcessBuilder("ffmpeg", "-y", "-loglevel", "error", "-f", "concat", "-safe", "0",
+                    "-i", list.getAbsolutePath(), "-c", "copy", outPath)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            if (!ffmpeg.waitFor(CONCAT_TIMEOUT_MINUTES, TimeUnit.MINUTES)) return false;
+            return ffmpeg.exitValue() == 0;
+        } catch (IOException e) {
+            // ffmpeg absent du PATH
+            return false;
+        } finally {
+            if (ffmpeg != null && ffmpeg.isAlive()) ffmpeg.destroyForcibly();
+            list.delete();
+        }
+    }
+
+    /**
+     * Chemin du fichier d'un segment : à côté du fichier de sortie, avec la même extension
+     * pour que ffmpeg l'assemble dans le même conteneur.
+     *
+     * @param i le numéro du segment
+     * @return le fichier segment
+     */
+    private File partFile(int i) {
+        int dot = outPath.lastIndexOf('.');
+        boolean hasExtension = dot > Math.max(outPath.lastIndexOf('/'), outPath.lastIndexOf(File.separatorChar));
+        String base = hasExtension ? outPath.substring(0, dot) : outPath;
+        String extension = hasExtension ? outPath.substring(dot) : ".avi";
+        return new File(base + ".part" + String.format("%03d", i) + extension);
+    }
+}
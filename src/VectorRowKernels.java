@@ -0,0 +1,164 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implémentation vectorisée des noyaux de calcul sur les lignes (jdk.incubator.vector).
+ * Les octets sont chargés sur toute la largeur des vecteurs puis étendus sans signe voie par voie,
+ * en shorts pour les différences absolues et en entiers pour les sommes de pearson ; les accumulateurs
+ * sont réduits et vidés dans des long avant de pouvoir déborder, ce qui garantit des résultats
+ * identiques à la version scalaire.
+ * Nécessite --add-modules jdk.incubator.vector à la compilation et à l'exécution.
+ */
+public class VectorRowKernels implements RowKernels {
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Itérations entre deux versements des accumulateurs short dans les accumulateurs int :
+     * chaque itération ajoute au plus 2 * 255 par voie, et 64 * 510 reste sous Short.MAX_VALUE.
+     */
+    private static final int SHORT_FLUSH_ITERATIONS = 64;
+
+    /**
+     * Versements short vers int entre deux réductions en long dans sumAbsDiff : chaque versement ajoute
+     * au plus 2 * 64 * 510 par voie int, et la réduction des voies se faisant en int, le total de toutes
+     * les voies doit rester sous Integer.MAX_VALUE. Calculé d'après le nombre de voies, qui peut atteindre 64 sur SVE.
+     */
+    private static final int INT_FLUSHES =
+            Math.max(1, Integer.MAX_VALUE / (2 * SHORT_FLUSH_ITERATIONS * 510) / INTS.length());
+
+    /**
+     * Itérations entre deux réductions en long dans pearsonSums : chaque itération ajoute au plus
+     * 4 * 255 * 255 par voie int (quatre octets par voie), avec la même contrainte sur la réduction.
+     */
+    private static final int PEARSON_ITERATIONS =
+            Math.max(1, Integer.MAX_VALUE / (4 * 255 * 255) / INTS.length());
+
+    private final ScalarRowKernels tail = new ScalarRowKernels();
+
+    /**
+     * Construit les noyaux vectorisés.
+     *
+     * @throws UnsupportedOperationException si les vecteurs sont trop courts pour être rentables
+     */
+    public VectorRowKernels() {
+        if (INTS.length() < 4) {
+            throw new UnsupportedOperationException("Vecteurs trop courts : " + INTS.length() + " voies");
+        }
+    }
+
+    @Override
+    public long sumAbsDiff(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int lanes = BYTES.length();
+        int bound = length - length % lanes;
+        long sum = 0;
+        int i = 0;
+        while (i < bound) {
+            int chunkEnd = i + (int) Math.min(bound - i, (long) INT_FLUSHES * SHORT_FLUSH_ITERATIONS * lanes);
+            IntVector wide = IntVector.zero(INTS);
+            while (i < chunkEnd) {
+                int end = Math.min(chunkEnd, i + SHORT_FLUSH_ITERATIONS * lanes);
+                ShortVector acc = ShortVector.zero(SHORTS);
+                for (; i < end; i += lanes) {
+                    ShortVector x = ByteVector.fromArray(BYTES, a, aOffset + i).reinterpretAsShorts();
+                    ShortVector y = ByteVector.fromArray(BYTES, b, bOffset + i).reinterpretAsShorts();
+                    acc = acc.add(evenBytes(x).sub(evenBytes(y)).abs())
+                             .add(oddBytes(x).sub(oddBytes(y)).abs());
+                }
+                wide = wide.add(sumPairs(acc));
+            }
+            sum += wide.reduceLanes(VectorOperators.ADD);
+        }
+        return sum + tail.sumAbsDiff(a, aOffset + bound, b, bOffset + bound, length - bound);
+    }
+
+    @Override
+    public void pearsonSums(byte[] a, int aOffset, byte[] b, int bOffset, int length, long[] sums) {
+        int lanes = BYTES.length();
+        int bound = length - length % lanes;
+        long sumX = 0, sumY = 0, sumX2 = 0, sumY2 = 0, sumXY = 0;
+        int i = 0;
+        while (i < bound) {
+            int end = i + (int) Math.min(bound - i, (long) PEARSON_ITERATIONS * lanes);
+            IntVector accX = IntVector.zero(INTS), accY = IntVector.zero(INTS);
+            IntVector accX2 = IntVector.zero(INTS), accY2 = IntVector.zero(INTS), accXY = IntVector.zero(INTS);
+            for (; i < end; i += lanes) {
+                IntVector x = ByteVector.fromArray(BYTES, a, aOffset + i).reinterpretAsInts();
+                IntVector y = ByteVector.fromArray(BYTES, b, bOffset + i).reinterpretAsInts();
+                // Chaque voie int porte quatre octets, étendus un à un pour que les produits restent exacts
+                for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+                    IntVector xs = byteAt(x, shift);
+                    IntVector ys = byteAt(y, shift);
+                    accX = accX.add(xs);
+                    accY = accY.add(ys);
+                    accX2 = accX2.add(xs.mul(xs));
+                    accY2 = accY2.add(ys.mul(ys));
+                    accXY = accXY.add(xs.mul(ys));
+                }
+            }
+            sumX += accX.reduceLanes(VectorOperators.ADD);
+            sumY += accY.reduceLanes(VectorOperators.ADD);
+            sumX2 += accX2.reduceLanes(VectorOperators.ADD);
+            sumY2 += accY2.reduceLanes(VectorOperators.ADD);
+            sumXY += accXY.reduceLanes(VectorOperators.ADD);
+        }
+        tail.pearsonSums(a, aOffset + bound, b, bOffset + bound, length - bound, sums);
+        sums[0] += sumX;
+        sums[1] += sumY;
+        sums[2] += sumX2;
+        sums[3] += sumY2;
+        sums[4] += sumXY;
+    }
+
+    /**
+     * Extension sans signe des octets pairs : chaque voie short, vue sur les mêmes octets que le vecteur
+     * chargé, porte deux octets voisins, dont celui de poids faible est isolé par un masque.
+     * Contrairement à une conversion B2S, aucune permutation de voies n'est nécessaire.
+     *
+     * @param pairs les octets chargés, vus comme des shorts
+     * @return les octets pairs (0-255)
+     */
+    private static ShortVector evenBytes(ShortVector pairs) {
+        return pairs.and((short) 0xFF);
+    }
+
+    /**
+     * Extension sans signe des octets impairs, isolés par un décalage logique.
+     *
+     * @param pairs les octets chargés, vus comme des shorts
+     * @return les octets impairs (0-255)
+     */
+    private static ShortVector oddBytes(ShortVector pairs) {
+        return pairs.lanewise(VectorOperators.LSHR, 8);
+    }
+
+    /**
+     * Somme deux à deux des voies d'un vecteur de shorts non signés (0-65 535), en entiers :
+     * chaque voie int, vue sur les mêmes octets, contient deux shorts, isolés par un masque et un décalage.
+     *
+     * @param shorts les shorts
+     * @return les entiers, chacun somme de deux voies voisines
+     */
+    private static IntVector sumPairs(ShortVector shorts) {
+        IntVector pairs = shorts.reinterpretAsInts();
+        return pairs.and(0xFFFF).add(pairs.lanewise(VectorOperators.LSHR, 16));
+    }
+
+    /**
+     * Extension sans signe de l'un des quatre octets portés par chaque voie int.
+     *
+     * @param quads les octets chargés, vus comme des entiers
+     * @param shift la position de l'octet en bits (0, 8, 16 ou 24)
+     * @return les octets à cette position (0-255)
+     */
+    private static IntVector byteAt(IntVector quads, int shift) {
+        return quads.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+    }
+}
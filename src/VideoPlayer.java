@@ -3,6 +3,7 @@
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -14,16 +15,14 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
-import org.opencv.core.Size;
-import org.opencv.videoio.VideoCapture;
-import org.opencv.videoio.VideoWriter;
-import org.opencv.videoio.Videoio;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-import java.util.function.Function;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 /**
  * Application JavaFX permettant de chiffrer et déchiffrer des vidéos en temps réel.
@@ -62,7 +61,7 @@ public class VideoPlayer extends Application {
     private final List<TabContext> tabs = new ArrayList<>();
 
     private Stage stage;
-    private VideoCapture videoCapture;
+    private FrameSource frameSource;
     private String currentVideoPath;
 
     // État de lecture
@@ -71,7 +70,39 @@ public class VideoPlayer extends Application {
     private int currentFrameIndex = 0;
     private int totalFrames = 0;
     private double fps = 30.0;
-    private long lastFrameTime = 0;
+
+    // Lecture en arrière-plan : frames décodées à l'avance et horloge de présentation
+    private static final int PLAYBACK_BUFFER_SIZE = 8;
+    private PlaybackBuffer playbackBuffer;
+    private long playbackStartTime;
+    private int playbackStartIndex;
+
+    // Frames traitées récemment affichées, par (frame, onglet, paramètres) : revenir à un onglet
+    // ou à une clé déjà essayée ne coûte ni décodage ni traitement
+    private static final int PROCESSED_CACHE_MB = Integer.getInteger("videoscrambler.processedCacheMb", 128);
+    private final MatCache<String> processedCache = new MatCache<>(PROCESSED_CACHE_MB * 1024L * 1024L);
+
+    // Conversion vers l'affichage, une par vue (image et tampons réutilisés) : lecture sur le thread JavaFX,
+    // aperçus de navigation préparés sur le thread de rendu
+    private final MatImageConverter inputConverter = new MatImageConverter();
+    private final MatImageConverter outputConverter = new MatImageConverter();
+    private final MatImageConverter previewInputConverter = new MatImageConverter();
+    private final MatImageConverter previewOutputConverter = new MatImageConverter();
+
+    // Rendus de navigation et d'édition des paramètres, regroupés et calculés hors du thread JavaFX
+    private final RenderScheduler renderScheduler = new RenderScheduler(Platform::runLater, RenderScheduler.DEFAULT_DEBOUNCE_MS);
+    private int videoGeneration = 0;
+
+    // Clé suivie d'une frame à l'autre en déchiffrement automatique (onglet 4), pour la navigation.
+    // La lecture et chaque segment d'export ont leur propre suivi : ils parcourent d'autres frames
+    private final KeyTracker previewKeyTracker = new KeyTracker();
+
+    // Tâches de fond de l'interface (recherche de clé...)
+    private final ExecutorService backgroundExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "background-task");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * Démarre l'application JavaFX et charge l'interface FXML.
@@ -103,48 +134,31 @@ public class VideoPlayer extends Application {
         tabs.add(new TabContext(
                 "Vidéo d'entrée (claire)", "Vidéo de sortie (chiffrée)",
                 openButton, playButton, prevButton, nextButton, exportButton, autoButton,
-                frame -> {
-                    int r = parse(rField, 3);
-                    int s = parse(sField, 7);
-                    return Encryption.encrypt(frame, r, s);
-                }
+                () -> FrameProcessor.encrypt(parse(rField, 3), parse(sField, 7))
         ).addInputs(rField, sField));
 
         // Configuration Onglet 1 : Déchiffrement (r, s)
         tabs.add(new TabContext(
                 "Vidéo d'entrée (chiffrée)", "Vidéo de sortie (déchiffrée)",
                 openButton2, playButton2, prevButton2, nextButton2, exportButton2, autoButton2,
-                frame -> {
-                    int r = parse(rField2, 3);
-                    int s = parse(sField2, 7);
-                    return Encryption.decrypt(frame, r, s);
-                }
+                () -> FrameProcessor.decrypt(parse(rField2, 3), parse(sField2, 7))
         ).addInputs(rField2, sField2));
 
         // Configuration Onglet 2 : Chiffrement Dynamique (k)
         tabs.add(new TabContext(
                 "Vidéo d'entrée (claire)", "Vidéo de sortie (chiffrée - dynamique)",
                 openButton3, playButton3, prevButton3, nextButton3, exportButton3, null,
-                frame -> {
-                    int k = parse(kField, 0);
-                    return Encryption.dynamicEncrypt(frame, k);
-                }
+                () -> FrameProcessor.dynamicEncrypt(parse(kField, 0))
         ).addInputs(kField));
 
         // Configuration Onglet 3 : Déchiffrement Dynamique (k)
         tabs.add(new TabContext(
                 "Vidéo d'entrée (chiffrée)", "Vidéo de sortie (déchiffrée - dynamique)",
                 openButton4, playButton4, prevButton4, nextButton4, exportButton4, null,
-                frame -> {
-                    if (autoCheckBox4.isSelected()) {
-                        Key k = Encryption.smartCrack(frame);
-                        return Encryption.decrypt(frame, k.r, k.s);
-                    } else {
-                        int k = parse(kField4, 0);
-                        return Encryption.dynamicDecrypt(frame, k);
-                    }
-                }
-        ).addInputs(kField4));
+                () -> autoCheckBox4.isSelected()
+                        ? FrameProcessor.autoDecrypt(previewKeyTracker)
+                        : FrameProcessor.dynamicDecrypt(parse(kField4, 0))
+        ).addInputs(kField4).addOptions(autoCheckBox4));
 
         // Listener global pour le changement d'onglet
         modeTabPane.getSelectionModel().selectedIndexProperty().addListener((obs, old, neu) -> updateUIForActiveTab());
@@ -181,7 +195,10 @@ public class VideoPlayer extends Application {
      * Rafraîchit l'affichage de la frame courante avec le traitement de l'onglet actif.
      */
     private void refreshDisplay() {
-        if (videoCapture != null && videoCapture.isOpened()) {
+        if (isPlaying && playbackBuffer != null) {
+            // En lecture, seules les frames décodées à partir de maintenant utilisent les nouveaux paramètres
+            playbackBuffer.setProcessor(playbackProcessor(getCurrentTab()));
+        } else if (frameSource != null && frameSource.isOpened()) {
             showFrame(currentFrameIndex);
         }
     }
@@ -247,13 +264,22 @@ public class VideoPlayer extends Application {
      * @param path le chemin du fichier vidéo à charger
      */
     private void loadVideo(String path) {
-        if (videoCapture != null) videoCapture.release();
+        // La lecture en cours décode l'ancienne vidéo avec sa propre VideoCapture : elle est arrêtée
+        if (isPlaying) pauseVideo();
+
+        // Les ressources de la vidéo précédente sont libérées par le thread de rendu, après ses rendus en cours
+        FrameSource previous = frameSource;
+        if (previous != null) renderScheduler.execute(previous::release);
+        renderScheduler.execute(processedCache::clear);
+        videoGeneration++;
+
         currentVideoPath = path;
-        videoCapture = new VideoCapture(path);
+        frameSource = new FrameSource(path);
+        previewKeyTracker.reset();
 
-        if (videoCapture.isOpened()) {
-            totalFrames = (int) videoCapture.get(Videoio.CAP_PROP_FRAME_COUNT);
-            fps = videoCapture.get(Videoio.CAP_PROP_FPS);
+        if (frameSource.isOpened()) {
+            totalFrames = frameSource.getFrameCount();
+            fps = frameSource.getFps();
             if (fps <= 0) fps = 30.0;
             currentFrameIndex = 0;
             showFrame(0);
@@ -275,30 +301,37 @@ public class VideoPlayer extends Application {
 
     /**
      * Lance la lecture de la vidéo avec le traitement de l'onglet actif.
-     * Utilise un AnimationTimer pour synchroniser l'affichage avec le FPS de la vidéo.
+     * Les frames sont décodées et traitées à l'avance par un thread dédié ; l'AnimationTimer
+     * affiche seulement la frame due selon le FPS de la vidéo et saute celles arrivées en retard.
      */
     private void playVideo() {
-        if (videoCapture == null || !videoCapture.isOpened()) return;
+        if (frameSource == null || !frameSource.isOpened()) return;
 
         isPlaying = true;
         getCurrentTab().playButton.setText("⏸ Pause");
-        lastFrameTime = System.nanoTime();
 
-        videoCapture.set(Videoio.CAP_PROP_POS_FRAMES, currentFrameIndex);
+        playbackStartIndex = currentFrameIndex + 1;
+        playbackStartTime = System.nanoTime();
+        playbackBuffer = new PlaybackBuffer(currentVideoPath, playbackStartIndex,
+                playbackProcessor(getCurrentTab()), PLAYBACK_BUFFER_SIZE);
+        playbackBuffer.start();
 
         playTimer = new AnimationTimer() {
             @Override
             public void handle(long now) {
-                if (now - lastFrameTime >= (1_000_000_000 / fps)) {
-                    if (currentFrameIndex < totalFrames - 1) {
-                        currentFrameIndex++;
-                        Mat frame = new Mat();
-                        if (videoCapture.read(frame) && !frame.empty()) {
-                            processAndDisplay(frame);
-                        }
-                        lastFrameTime = now;
+                int dueIndex = playbackStartIndex + (int) ((now - playbackStartTime) * fps / 1_000_000_000L);
+                PlaybackBuffer.Frame frame = playbackBuffer.poll(dueIndex);
+                if (frame != null) {
+                    currentFrameIndex = frame.index;
+                    display(frame.raw, frame.processed);
+                    playbackBuffer.release(frame);
+                } else if (playbackBuffer.isFinished()) {
+                    RuntimeException error = playbackBuffer.getError();
+                    pauseVideo();
+                    if (error != null) {
+                        // Boîte de dialogue modale impossible pendant le traitement d'une animation
+                        Platform.runLater(() -> showAlert("Erreur", "Echec du traitement de la frame : " + error.getMessage()));
                     } else {
-                        pauseVideo();
                         currentFrameIndex = 0;
                         showFrame(0);
                     }
@@ -315,35 +348,123 @@ public class VideoPlayer extends Application {
         isPlaying = false;
         getCurrentTab().playButton.setText("▶ Lecture");
         if (playTimer != null) playTimer.stop();
+        if (playbackBuffer != null) {
+            playbackBuffer.stop();
+            playbackBuffer = null;
+        }
     }
 
     /**
      * Affiche une frame spécifique de la vidéo avec traitement.
+     * Les paramètres de l'onglet sont relevés immédiatement, mais la lecture (cache ou décodeur de
+     * {@link FrameSource}), le traitement et la réduction à la taille des vues se font sur le thread
+     * de rendu : les demandes rapprochées sont regroupées et seule la dernière est affichée.
      *
      * @param index l'indice de la frame à afficher
      */
     private void showFrame(int index) {
-        if (videoCapture == null || !videoCapture.isOpened()) return;
-        videoCapture.set(Videoio.CAP_PROP_POS_FRAMES, index);
-        Mat frame = new Mat();
-        if (videoCapture.read(frame)) {
-            processAndDisplay(frame);
+        if (frameSource == null || !frameSource.isOpened()) return;
+
+        TabContext current = getCurrentTab();
+        FrameSource source = frameSource;
+        String key = videoGeneration + "|" + index + "|" + tabs.indexOf(current) + "|" + current.parametersKey();
+        FrameProcessor processor = current.processor.get();
+        double[] inputSize = previewSize(inputImageView);
+        double[] outputSize = previewSize(outputImageView);
+
+        renderScheduler.request(
+                () -> renderPreview(source, index, key, processor, inputSize, outputSize),
+                this::publishPreview);
+    }
+
+    /**
+     * Lit et traite une frame, puis prépare ses aperçus (thread de rendu).
+     * Le résultat du traitement est repris du cache s'il a déjà été calculé avec les mêmes paramètres.
+     *
+     * @param source la vidéo
+     * @param index l'indice de la frame
+     * @param key la clé de la frame traitée dans le cache (vidéo, frame, onglet, paramètres)
+     * @param processor le traitement de l'onglet
+     * @param inputSize la taille de l'aperçu d'entrée
+     * @param outputSize la taille de l'aperçu de sortie
+     * @return les aperçus et la vérification de clé, ou null si la frame n'a pas pu être lue
+     */
+    private RenderedFrame renderPreview(FrameSource source, int index, String key, FrameProcessor processor,
+                                                      double[] inputSize, double[] outputSize) {
+        Mat frame = source.read(index);
+        if (frame == null) return null;
+
+        Mat processed = processedCache.get(key);
+        if (processed == null) {
+            processed = new Mat();
+            processor.process(frame, processed, index);
+            processedCache.put(key, processed);
         }
+        // La vérification ne lit que quelques pixels : elle est refaite même si le résultat vient du cache
+        return new RenderedFrame(
+                previewInputConverter.prepare(frame, inputSize[0], inputSize[1]),
+                previewOutputConverter.prepare(processed, outputSize[0], outputSize[1]),
+                processor.checkKey(frame, index));
     }
 
     /**
-     * Traite une frame brute avec le processeur de l'onglet actif et met à jour l'affichage.
+     * Affiche des aperçus préparés par le thread de rendu (thread JavaFX), ainsi que le résultat
+     * de la vérification de clé de la frame dans le libellé de sortie.
+     * Ignorés pendant la lecture, qui affiche ses propres frames.
      *
-     * @param rawFrame la frame brute à traiter
-     */
-    private void processAndDisplay(Mat rawFrame) {
-        try {
-            Mat processed = getCurrentTab().processor.apply(rawFrame);
-            inputImageView.setImage(matToImage(rawFrame));
-            outputImageView.setImage(matToImage(processed));
-        } catch (Exception e) {
-            e.printStackTrace();
+     * @param rendered les aperçus et la vérification de clé
+     */
+    private void publishPreview(RenderedFrame rendered) {
+        if (isPlaying) return;
+        inputImageView.setImage(previewInputConverter.publish(rendered.input));
+        outputImageView.setImage(previewOutputConverter.publish(rendered.output));
+
+        String label = getCurrentTab().outputLabel;
+        if (rendered.check == KeyCheck.CORRUPTED_CHECKSUM) {
+            label += " - clé cachée altérée, frame déchiffrée avec la suite de clés";
+        } else if (rendered.check == KeyCheck.LEGACY) {
+            label += " - vidéo d'une version antérieure, frame déchiffrée avec sa clé cachée";
         }
+        outputLabel.setText(label);
+    }
+
+    /**
+     * Affiche une frame brute et sa version traitée.
+     *
+     * @param rawFrame la frame brute
+     * @param processed la frame traitée
+     */
+    private void display(Mat rawFrame, Mat processed) {
+        inputImageView.setImage(toPreview(inputConverter, inputImageView, rawFrame));
+        outputImageView.setImage(toPreview(outputConverter, outputImageView, processed));
+    }
+
+    /**
+     * Convertit une frame traitée en pleine résolution en aperçu à la taille de la vue.
+     * L'export n'est pas concerné.
+     *
+     * @param converter le convertisseur de la vue
+     * @param view la vue d'affichage
+     * @param mat la frame pleine résolution
+     * @return l'image à afficher
+     */
+    private Image toPreview(MatImageConverter converter, ImageView view, Mat mat) {
+        double[] size = previewSize(view);
+        return converter.convert(mat, size[0], size[1]);
+    }
+
+    /**
+     * Taille d'affichage d'une vue en pixels physiques (écrans haute densité compris).
+     *
+     * @param view la vue d'affichage
+     * @return la largeur et la hauteur maximales de l'aperçu
+     */
+    private double[] previewSize(ImageView view) {
+        double outputScale = 1.0;
+        if (view.getScene() != null && view.getScene().getWindow() != null) {
+            outputScale = view.getScene().getWindow().getOutputScaleX();
+        }
+        return new double[] {view.getFitWidth() * outputScale, view.getFitHeight() * outputScale};
     }
 
     // --- ACTIONS AUTOMATIQUE & EXPORT ---
@@ -351,51 +472,77 @@ public class VideoPlayer extends Application {
     /**
      * Gestionnaire pour la recherche automatique de clé de chiffrement.
      * Pour l'onglet 0 (chiffrement) : génère une clé aléatoire.
-     * Pour l'onglet 1 (déchiffrement) : analyse plusieurs frames et utilise brute force.
-     * Exécute le traitement dans un thread séparé pour ne pas bloquer l'UI.
+     * Pour l'onglet 1 (déchiffrement) : fait voter smartCrack sur des frames réparties dans la vidéo
+     * (voir {@link ConsensusCracker}). La recherche s'exécute en tâche de fond, avec sa propre VideoCapture,
+     * et peut être annulée depuis la fenêtre de progression ; l'interface reste réactive.
      */
     @FXML
     private void handleAutoKey() {
-        if (videoCapture == null) return;
+        if (frameSource == null) return;
 
         TabContext current = getCurrentTab();
-        setAllControlsDisabled(true);
-
 
-        Key result;
         if (modeTabPane.getSelectionModel().getSelectedIndex() == 0) {
-            result = new Key(new Random().nextInt(256), new Random().nextInt(128));
-        } else {
-
-            int step = Math.max(1, totalFrames / 10);
-            Mat mat = new Mat();
-            Mat bestFrame = new Mat();
-
-            double bestScore = Double.NEGATIVE_INFINITY;
-            for(int i = 0; i < totalFrames; i += step) {
-                videoCapture.set(Videoio.CAP_PROP_POS_FRAMES, i);
-                videoCapture.read(mat);
-                double score = Encryption.evaluateFrameForKeyFinding(mat);
-                if(score > bestScore) {
-                    bestScore = score;
-                    bestFrame = mat.clone();
-                }
-            }
-
-            result = Encryption.bruteForceCrack(bestFrame);
+            applyFoundKey(current, new Key(new Random().nextInt(256), new Random().nextInt(128)));
+            return;
         }
 
-        Platform.runLater(() -> {
-            if (current.inputs.size() >= 2) {
-                current.inputs.get(0).setText(String.valueOf(result.r));
-                current.inputs.get(1).setText(String.valueOf(result.s));
+        setAllControlsDisabled(true);
+
+        String path = currentVideoPath;
+        Task<Key> task = new Task<>() {
+            @Override
+            protected Key call() throws Exception {
+                return new ConsensusCracker(path).crack(p -> updateProgress(p, 1.0), this::isCancelled);
             }
+        };
 
-            showAlert("Succès", "Clé trouvée : R=" + result.r + ", S=" + result.s);
+        ProgressBar progressBar = new ProgressBar(0);
+        progressBar.progressProperty().bind(task.progressProperty());
+        Alert progressDialog = createProgressDialog("Recherche de la clé", progressBar);
+        progressDialog.getDialogPane().getButtonTypes().add(ButtonType.CANCEL);
+        // Le bouton Annuler (ou la fermeture de la fenêtre) interrompt la recherche
+        progressDialog.setOnHidden(e -> task.cancel());
+
+        task.setOnSucceeded(e -> {
+            progressDialog.close();
+            setAllControlsDisabled(false);
+            Key result = task.getValue();
+            if (result == null) {
+                showAlert("Erreur", "Impossible de trouver la clé de cette vidéo.");
+            } else {
+                applyFoundKey(current, result);
+            }
+        });
+        task.setOnFailed(e -> {
+            progressDialog.close();
+            setAllControlsDisabled(false);
+            task.getException().printStackTrace();
+            showAlert("Erreur", "Echec de la recherche de clé : " + task.getException().getMessage());
+        });
+        task.setOnCancelled(e -> {
+            progressDialog.close();
             setAllControlsDisabled(false);
-            refreshDisplay();
         });
 
+        progressDialog.show();
+        backgroundExecutor.submit(task);
+    }
+
+    /**
+     * Reporte une clé trouvée dans les champs de l'onglet et rafraîchit l'affichage.
+     *
+     * @param tab l'onglet ayant lancé la recherche
+     * @param key la clé trouvée
+     */
+    private void applyFoundKey(TabContext tab, Key key) {
+        if (tab.inputs.size() >= 2) {
+            tab.inputs.get(0).setText(String.valueOf(key.r));
+            tab.inputs.get(1).setText(String.valueOf(key.s));
+        }
+
+        showAlert("Succès", "Clé trouvée : R=" + key.r + ", S=" + key.s);
+        refreshDisplay();
     }
 
     /**
@@ -405,7 +552,7 @@ public class VideoPlayer extends Application {
      */
     @FXML
     private void handleExportVideo() {
-        if (videoCapture == null) return;
+        if (frameSource == null) return;
 
         File file = promptForSave();
         if (file == null) return;
@@ -416,10 +563,14 @@ public class VideoPlayer extends Application {
         setAllControlsDisabled(true);
 
         ProgressBar progressBar = new ProgressBar(0);
-        Alert progressDialog = createProgressDialog(progressBar);
+        Alert progressDialog = createProgressDialog("Export en cours", progressBar);
         progressDialog.show();
 
-        Function<Mat, Mat> currentProcessor = getCurrentTab().processor;
+        // Les paramètres sont figés au lancement de l'export
+        KeyCheckLog keyChecks = new KeyCheckLog();
+        Supplier<FrameProcessor> processors = exportProcessors(getCurrentTab(), keyChecks);
+        // Décrit ces paramètres : un export interrompu n'est repris qu'avec les mêmes
+        String configuration = tabs.indexOf(getCurrentTab()) + "|" + getCurrentTab().parametersKey();
 
         // Thread sécurisé avec try-catch pour garantir la fermeture de la popup
         new Thread(() -> {
@@ -427,7 +578,9 @@ public class VideoPlayer extends Application {
             String errorMsg = "Erreur inconnue";
 
             try {
-                success = exportLoop(file.getAbsolutePath(), currentProcessor, progressBar);
+                SegmentedExport export = new SegmentedExport(currentVideoPath, file.getAbsolutePath(),
+                        processors, configuration, SegmentedExport.DEFAULT_SEGMENTS);
+                success = export.run(p -> Platform.runLater(() -> progressBar.setProgress(p))) >= 0;
                 if (!success) errorMsg = "Impossible d'initialiser l'export (Source ou Destination invalide).";
             } catch (Exception e) {
                 e.printStackTrace();
@@ -446,7 +599,10 @@ public class VideoPlayer extends Application {
                 setAllControlsDisabled(false);
 
                 if (finalSuccess) {
-                    showAlert("Export", "Export terminé avec succès !");
+                    String summary = keyChecks.summary();
+                    showAlert("Export", summary.isEmpty()
+                            ? "Export terminé avec succès !"
+                            : "Export terminé avec succès.\n\nAttention : " + summary + ".");
                 } else {
                     showAlert("Erreur Export", "Echec de l'export : " + finalErrorMsg);
                 }
@@ -455,60 +611,42 @@ public class VideoPlayer extends Application {
     }
 
     /**
-     * Boucle d'export qui traite chaque frame de la vidéo et l'écrit dans le fichier de sortie.
-     * Utilise le codec HuffYUV (HFYU) pour un export lossless rapide.
+     * Indique si l'onglet est en déchiffrement automatique, dont le processeur suit la clé
+     * d'une frame à l'autre.
      *
-     * @param outPath le chemin du fichier de sortie
-     * @param processor la fonction de traitement à appliquer à chaque frame
-     * @param bar la barre de progression à mettre à jour
-     * @return true si l'export a réussi, false sinon
-     */
-    private boolean exportLoop(String outPath, Function<Mat, Mat> processor, ProgressBar bar) {
-        VideoCapture cap = new VideoCapture(currentVideoPath);
-        if (!cap.isOpened()) {
-            System.err.println("Erreur: Impossible d'ouvrir la vidéo source pour l'export.");
-            return false;
-        }
-
-        int w = (int) cap.get(Videoio.CAP_PROP_FRAME_WIDTH);
-        int h = (int) cap.get(Videoio.CAP_PROP_FRAME_HEIGHT);
-        double vidFps = cap.get(Videoio.CAP_PROP_FPS);
-        if (vidFps <= 0) vidFps = 30.0;
-
-        // --- MODIFICATION CODEC ---
-        // Utilisation de HuffYUV (HFYU)
-        // C'est un codec Lossless (Sans perte) mais beaucoup plus rapide que FFV1
-        // Le fichier sera un peu plus gros, mais l'export sera rapide.
-
-        int fourcc = VideoWriter.fourcc('H','F','Y','U');
-
-        VideoWriter writer = new VideoWriter(outPath, fourcc, vidFps, new Size(w, h), true);
-
-        if (!writer.isOpened()) {
-            System.err.println("Erreur: Impossible de créer le fichier de sortie avec HFYU. Codec manquant ?");
-            cap.release();
-            return false;
-        }
-
-        Mat frame = new Mat();
-        int count = 0;
-        int total = (int) cap.get(Videoio.CAP_PROP_FRAME_COUNT);
-        if (total <= 0) total = 1;
-
-        while (cap.read(frame) && !frame.empty()) {
-            Mat out = processor.apply(frame);
-            writer.write(out);
-            count++;
+     * @param tab l'onglet
+     * @return true pour l'onglet 4 avec recherche automatique de la clé
+     */
+    private boolean isAutoDecrypt(TabContext tab) {
+        return tabs.indexOf(tab) == 3 && autoCheckBox4.isSelected();
+    }
 
-            if (count % 5 == 0) { // Mise à jour de la barre plus fréquente
-                double p = (double) count / total;
-                Platform.runLater(() -> bar.setProgress(p));
-            }
-        }
+    /**
+     * Crée le processeur de lecture de l'onglet, avec son propre suivi de clé en déchiffrement automatique.
+     *
+     * @param tab l'onglet actif
+     * @return le processeur
+     */
+    private FrameProcessor playbackProcessor(TabContext tab) {
+        return isAutoDecrypt(tab) ? FrameProcessor.autoDecrypt() : tab.processor.get();
+    }
 
-        writer.release();
-        cap.release();
-        return true;
+    /**
+     * Fournit les processeurs d'export de l'onglet, un par segment. Les paramètres sont lus ici,
+     * sur le thread JavaFX : les processeurs sans état sont partagés par les segments, tandis qu'en
+     * déchiffrement automatique chaque segment a son propre suivi de clé. En déchiffrement dynamique
+     * par graine, la vérification de clé de chaque frame est consignée pour le bilan de l'export.
+     *
+     * @param tab l'onglet actif
+     * @param keyChecks reçoit les vérifications de clé
+     * @return le fournisseur de processeurs, utilisable depuis n'importe quel thread
+     */
+    private Supplier<FrameProcessor> exportProcessors(TabContext tab, KeyCheckLog keyChecks) {
+        if (isAutoDecrypt(tab)) return FrameProcessor::autoDecrypt;
+        FrameProcessor processor = tabs.indexOf(tab) == 3
+                ? FrameProcessor.dynamicDecrypt(parse(kField4, 0), keyChecks)
+                : tab.processor.get();
+        return () -> processor;
     }
 
     // --- UTILITAIRES ---
@@ -552,16 +690,17 @@ public class VideoPlayer extends Application {
     }
 
     /**
-     * Crée une fenêtre de dialogue avec une barre de progression pour l'export.
+     * Crée une fenêtre de dialogue avec une barre de progression (export, recherche de clé).
      *
+     * @param title le titre de la fenêtre
      * @param bar la barre de progression à afficher
      * @return l'Alert configurée
      */
-    private Alert createProgressDialog(ProgressBar bar) {
+    private Alert createProgressDialog(String title, ProgressBar bar) {
         bar.setPrefWidth(300);
         // Changement AlertType.NONE -> INFORMATION pour avoir un comportement standard de fenêtre
         Alert a = new Alert(Alert.AlertType.INFORMATION);
-        a.setTitle("Export en cours");
+        a.setTitle(title);
         a.setHeaderText(null);
         a.getDialogPane().setContent(new VBox(10, new Label("Traitement en cours..."), bar));
         // On enlève le bouton OK pour forcer l'attente (ou permettre fermeture propre via code)
@@ -569,35 +708,24 @@ public class VideoPlayer extends Application {
         return a;
     }
 
+    // --- CLASSES INTERNES ---
+
     /**
-     * Convertit une Mat OpenCV en Image JavaFX pour l'affichage.
-     * Gère les images en niveaux de gris et en couleur (BGR).
-     *
-     * @param mat la matrice OpenCV à convertir
-     * @return l'Image JavaFX correspondante
-     */
-    private Image matToImage(Mat mat) {
-        int w = mat.cols(), h = mat.rows(), c = mat.channels();
-        WritableImage img = new WritableImage(w, h);
-        PixelWriter pw = img.getPixelWriter();
-        byte[] buf = new byte[w * h * c];
-        mat.get(0, 0, buf);
-        int[] pixels = new int[w * h];
-
-        for (int i = 0; i < pixels.length; i++) {
-            if (c == 3) {
-                int b = buf[i*3]&0xFF, g = buf[i*3+1]&0xFF, r = buf[i*3+2]&0xFF;
-                pixels[i] = 0xFF000000 | (r<<16) | (g<<8) | b;
-            } else {
-                int g = buf[i]&0xFF;
-                pixels[i] = 0xFF000000 | (g<<16) | (g<<8) | g;
-            }
+     * Frame préparée par le thread de rendu : aperçus d'entrée et de sortie,
+     * et vérification de clé de la frame (null si le traitement n'en a pas).
+     */
+    private static class RenderedFrame {
+        final MatImageConverter.Preview input;
+        final MatImageConverter.Preview output;
+        final KeyCheck check;
+
+        RenderedFrame(MatImageConverter.Preview input, MatImageConverter.Preview output, KeyCheck check) {
+            this.input = input;
+            this.output = output;
+            this.check = check;
         }
-        pw.setPixels(0,0,w,h, PixelFormat.getIntArgbInstance(), pixels, 0, w);
-        return img;
     }
 
-    // --- CLASSE INTERNE CONTEXTE ---
 
     /**
      * Classe interne représentant le contexte d'un onglet de traitement.
@@ -606,8 +734,9 @@ public class VideoPlayer extends Application {
     private class TabContext {
         String inputLabel, outputLabel;
         Button openButton, playButton, prevButton, nextButton, exportButton, autoButton;
-        Function<Mat, Mat> processor;
+        Supplier<FrameProcessor> processor;
         List<TextField> inputs = new ArrayList<>();
+        List<CheckBox> options = new ArrayList<>();
 
         /**
          * Construit un contexte d'onglet avec ses composants et son processeur.
@@ -620,11 +749,11 @@ public class VideoPlayer extends Application {
          * @param next le bouton frame suivante
          * @param export le bouton d'export
          * @param auto le bouton de détection automatique (peut être null)
-         * @param proc la fonction de traitement à appliquer aux frames
+         * @param proc fournit le traitement à appliquer aux frames, avec les paramètres courants de l'onglet
          */
         public TabContext(String inLbl, String outLbl,
                           Button open, Button play, Button prev, Button next, Button export, Button auto,
-                          Function<Mat, Mat> proc) {
+                          Supplier<FrameProcessor> proc) {
             this.inputLabel = inLbl; this.outputLabel = outLbl;
             this.openButton = open; this.playButton = play;
             this.prevButton = prev; this.nextButton = next;
@@ -646,6 +775,31 @@ public class VideoPlayer extends Application {
             return this;
         }
 
+        /**
+         * Ajoute des options (cases à cocher) qui modifient le traitement de l'onglet.
+         * Elles entrent dans la clé du cache des frames traitées ; leur rafraîchissement
+         * est géré par leur propre gestionnaire FXML.
+         *
+         * @param boxes les cases à cocher à ajouter
+         * @return ce TabContext pour chaînage
+         */
+        public TabContext addOptions(CheckBox... boxes) {
+            this.options.addAll(List.of(boxes));
+            return this;
+        }
+
+        /**
+         * Décrit les paramètres courants de l'onglet (champs de saisie et options).
+         *
+         * @return une chaîne identifiant les paramètres
+         */
+        public String parametersKey() {
+            StringBuilder key = new StringBuilder();
+            for (TextField f : inputs) key.append(f.getText()).append(';');
+            for (CheckBox c : options) key.append(c.isSelected()).append(';');
+            return key.toString();
+        }
+
         /**
          * Active ou désactive tous les contrôles de cet onglet.
          *
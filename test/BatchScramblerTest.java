@@ -0,0 +1,63 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Vérifie le choix des fichiers de sortie et le développement des motifs du traitement par lots.
+ */
+class BatchScramblerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameNamesInDifferentFoldersKeepTheirFolders() {
+        Path a = dir.resolve("in/a/clip.mp4");
+        Path b = dir.resolve("in/b/clip.mp4");
+        File out = dir.resolve("out").toFile();
+
+        Map<Path, File> outputs = BatchScrambler.outputFiles(List.of(a, b), out);
+
+        assertEquals(dir.resolve("out/a/clip.avi").toFile(), outputs.get(a));
+        assertEquals(dir.resolve("out/b/clip.avi").toFile(), outputs.get(b));
+    }
+
+    @Test
+    void sameBaseNameInSameFolderIsRejected() {
+        Path mp4 = dir.resolve("in/clip.mp4");
+        Path mov = dir.resolve("in/clip.mov");
+
+        assertNull(BatchScrambler.outputFiles(List.of(mp4, mov), dir.resolve("out").toFile()));
+    }
+
+    @Test
+    void singleStarMatchesOneLevelAndDoubleStarMatchesAll() throws IOException {
+        Path top = touch(dir.resolve("a.mp4"));
+        Path sub = touch(dir.resolve("sub/c.mp4"));
+        Path deep = touch(dir.resolve("sub/deep/d.mp4"));
+        touch(dir.resolve("sub/notes.txt"));
+
+        assertEquals(List.of(sub), BatchScrambler.expand(List.of(dir + "/sub/*.mp4")));
+        assertEquals(List.of(top, sub, deep), sorted(BatchScrambler.expand(List.of(dir + "/**.mp4"))));
+    }
+
+    private static Path touch(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.createFile(file);
+    }
+
+    private static List<Path> sorted(List<Path> paths) {
+        return paths.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,81 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie le cassage de clé par force brute : ordre des lignes retrouvé, et résultat déterministe
+ * malgré la recherche parallèle quand tous les candidats sont à égalité.
+ */
+class CrackTest {
+
+    private static final int HEIGHT = 480;
+    private static final int WIDTH = 640;
+
+    @BeforeAll
+    static void loadOpenCv() {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"0, 0", "37, 5", "200, 100", "255, 127", "1, 64"})
+    void crackedKeyRestoresRowOrder(int r, int s) {
+        Mat input = naturalFrame();
+        Mat encrypted = Encryption.encrypt(input, r, s);
+        Key key = Encryption.bruteForceCrack(encrypted);
+        Mat decrypted = Encryption.decrypt(encrypted, key.r, key.s);
+
+        // La clé complémentaire donne l'image miroir du premier bloc, aussi cohérente : elle est acceptée
+        int block = Encryption.largestPowerOf2(HEIGHT);
+        int rowSize = WIDTH * 3;
+        byte[] expected = EncryptionTest.bytes(input);
+        byte[] actual = EncryptionTest.bytes(decrypted);
+        boolean same = true, mirrored = true;
+        for (int row = 0; row < block; row++) {
+            same &= Arrays.equals(actual, row * rowSize, (row + 1) * rowSize,
+                    expected, row * rowSize, (row + 1) * rowSize);
+            mirrored &= Arrays.equals(actual, row * rowSize, (row + 1) * rowSize,
+                    expected, (block - 1 - row) * rowSize, (block - row) * rowSize);
+        }
+        assertTrue(same || mirrored, "clé " + r + "," + s + " cassée en " + key);
+    }
+
+    @Test
+    void tiedCandidatesGiveSmallestKey() {
+        Mat flat = new Mat(HEIGHT, WIDTH, CvType.CV_8UC3, new Scalar(90, 90, 90));
+        for (int run = 0; run < 5; run++) {
+            assertEquals(new Key(0, 0), Encryption.bruteForceCrack(flat));
+        }
+    }
+
+    /**
+     * Frame aux lignes voisines proches et aux lignes éloignées différentes (dégradés et bruit).
+     */
+    private static Mat naturalFrame() {
+        Random random = new Random(1);
+        byte[] data = new byte[HEIGHT * WIDTH * 3];
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                for (int c = 0; c < 3; c++) {
+                    int value = row / 2 + (col * (c + 1)) / 16 + random.nextInt(4);
+                    data[(row * WIDTH + col) * 3 + c] = (byte) (value & 0xFF);
+                }
+            }
+        }
+        Mat frame = new Mat(HEIGHT, WIDTH, CvType.CV_8UC3);
+        frame.put(0, 0, data);
+        return frame;
+    }
+}
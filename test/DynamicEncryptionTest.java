@@ -0,0 +1,108 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie la classification des frames du mode dynamique par la clé cachée : clé conforme à la suite,
+ * LSB altérés, ou frame chiffrée avec une autre clé que celle de la suite (version antérieure),
+ * pour des lignes étroites (tampons du tas) comme larges (copie native).
+ */
+class DynamicEncryptionTest {
+
+    private static final int K = 42;
+    private static final int HEIGHT = 240;
+
+    @BeforeAll
+    static void loadOpenCv() {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {320, 3000})
+    void scheduledKeyIsVerified(int width) {
+        Mat input = naturalFrame(width);
+        Mat encrypted = new Mat();
+        Mat decrypted = new Mat();
+        Encryption.dynamicEncrypt(input, encrypted, K, 5);
+
+        assertEquals(KeyCheck.VERIFIED, Encryption.checkDynamicKey(encrypted, K, 5));
+        assertEquals(KeyCheck.VERIFIED, Encryption.dynamicDecrypt(encrypted, decrypted, K, 5));
+        assertRestored(input, decrypted);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {320, 3000})
+    void alteredLsbAreReportedAndScheduledKeyIsUsed(int width) {
+        Mat input = naturalFrame(width);
+        Mat encrypted = new Mat();
+        Mat decrypted = new Mat();
+        Encryption.dynamicEncrypt(input, encrypted, K, 5);
+        // Réencodage avec perte simulé : la moitié des LSB sont inversés, la clé cachée avec eux
+        // (pas tous : la clé complémentaire donnerait l'image miroir, aussi cohérente que l'originale)
+        Random noise = new Random(width);
+        byte[] data = EncryptionTest.bytes(encrypted);
+        for (int i = 0; i < data.length; i++) data[i] ^= (byte) (noise.nextInt() & 1);
+        encrypted.put(0, 0, data);
+
+        assertEquals(KeyCheck.CORRUPTED_CHECKSUM, Encryption.checkDynamicKey(encrypted, K, 5));
+        assertEquals(KeyCheck.CORRUPTED_CHECKSUM, Encryption.dynamicDecrypt(encrypted, decrypted, K, 5));
+        assertRestored(input, decrypted);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {320, 3000})
+    void hiddenKeyOutsideScheduleIsLegacy(int width) {
+        Mat input = naturalFrame(width);
+        Mat encrypted = new Mat();
+        Mat decrypted = new Mat();
+        // Frame chiffrée avec la clé de la frame 3 mais lue comme frame 4 : seule la clé cachée convient,
+        // comme pour une vidéo d'une version antérieure
+        Encryption.dynamicEncrypt(input, encrypted, K, 3);
+
+        assertEquals(KeyCheck.LEGACY, Encryption.checkDynamicKey(encrypted, K, 4));
+        assertEquals(KeyCheck.LEGACY, Encryption.dynamicDecrypt(encrypted, decrypted, K, 4));
+        assertRestored(input, decrypted);
+    }
+
+    /**
+     * Frame à trois canaux aux lignes voisines proches (dégradés et bruit), comme une vraie image.
+     */
+    private static Mat naturalFrame(int width) {
+        Random random = new Random(width);
+        byte[] data = new byte[HEIGHT * width * 3];
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < width; col++) {
+                for (int c = 0; c < 3; c++) {
+                    int value = row + (col * (c + 1)) / 16 + random.nextInt(4);
+                    data[(row * width + col) * 3 + c] = (byte) (value & 0xFF);
+                }
+            }
+        }
+        Mat frame = new Mat(HEIGHT, width, CvType.CV_8UC3);
+        frame.put(0, 0, data);
+        return frame;
+    }
+
+    /**
+     * La frame déchiffrée ne diffère de l'originale que par les LSB : les 15 bits de la clé cachée,
+     * ou n'importe lesquels si la frame chiffrée a été altérée.
+     */
+    private static void assertRestored(Mat expected, Mat actual) {
+        byte[] a = EncryptionTest.bytes(expected);
+        byte[] b = EncryptionTest.bytes(actual);
+        assertEquals(a.length, b.length);
+        for (int i = 0; i < a.length; i++) {
+            assertTrue((a[i] ^ b[i]) <= 1, "octet " + i);
+        }
+    }
+}
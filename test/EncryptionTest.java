@@ -0,0 +1,121 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Vérifie le chiffrement par permutation de lignes : résultat identique à la formule d'origine
+ * et aller-retour exact, pour des hauteurs quelconques (blocs de puissances de 2), plusieurs nombres
+ * de canaux, et des lignes étroites (tampons du tas) comme larges (copie native).
+ */
+class EncryptionTest {
+
+    private static final int[][] KEYS = {{0, 0}, {255, 127}, {37, 5}, {128, 64}};
+
+    @BeforeAll
+    static void loadOpenCv() {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    static List<Arguments> frames() {
+        List<Arguments> frames = new ArrayList<>();
+        for (int height : new int[]{1, 2, 3, 7, 100, 1080}) {
+            for (int channels : new int[]{1, 3, 4}) {
+                // 3000 colonnes dépassent le seuil des lignes larges, sauf sur un seul canal
+                for (int width : new int[]{5, 3000}) {
+                    frames.add(Arguments.of(height, width, channels));
+                }
+            }
+        }
+        return frames;
+    }
+
+    @ParameterizedTest
+    @MethodSource("frames")
+    void encryptMatchesReferenceAndDecryptRestoresFrame(int height, int width, int channels) {
+        byte[] data = randomBytes(height * width * channels, height);
+        Mat input = new Mat(height, width, CvType.CV_8UC(channels));
+        input.put(0, 0, data);
+        Mat encrypted = new Mat();
+        Mat decrypted = new Mat();
+
+        for (int[] key : KEYS) {
+            Encryption.encrypt(input, encrypted, key[0], key[1]);
+            assertArrayEquals(referenceEncrypt(data, height, width * channels, key[0], key[1]), bytes(encrypted),
+                    "chiffrement " + height + "x" + width + "x" + channels + " clé " + key[0] + "," + key[1]);
+
+            Encryption.decrypt(encrypted, decrypted, key[0], key[1]);
+            assertArrayEquals(data, bytes(decrypted),
+                    "aller-retour " + height + "x" + width + "x" + channels + " clé " + key[0] + "," + key[1]);
+        }
+        input.release();
+        encrypted.release();
+        decrypted.release();
+    }
+
+    @ParameterizedTest
+    @MethodSource("frames")
+    void parallelPermutationMatchesReference(int height, int width, int channels) {
+        byte[] data = randomBytes(height * width * channels, height);
+        Mat input = new Mat(height, width, CvType.CV_8UC(channels));
+        input.put(0, 0, data);
+        Mat encrypted = new Mat();
+        Mat decrypted = new Mat();
+
+        long threshold = RowPermutation.getParallelThreshold();
+        RowPermutation.setParallelThreshold(0);
+        try {
+            Encryption.encrypt(input, encrypted, 37, 5);
+            assertArrayEquals(referenceEncrypt(data, height, width * channels, 37, 5), bytes(encrypted));
+            Encryption.decrypt(encrypted, decrypted, 37, 5);
+            assertArrayEquals(data, bytes(decrypted));
+        } finally {
+            RowPermutation.setParallelThreshold(threshold);
+        }
+        input.release();
+        encrypted.release();
+        decrypted.release();
+    }
+
+    /**
+     * Chiffrement de la version d'origine : la ligne i de chaque bloc de taille puissance de 2
+     * va en ligne (r + (2s + 1) * i) mod taille du bloc.
+     */
+    static byte[] referenceEncrypt(byte[] source, int height, int rowSize, int r, int s) {
+        byte[] dest = new byte[source.length];
+        int step = 2 * s + 1;
+        int startLine = 0;
+        while (startLine < height) {
+            int blockSize = Integer.highestOneBit(height - startLine);
+            for (int i = 0; i < blockSize; i++) {
+                int destRow = startLine + ((r + step * i) & (blockSize - 1));
+                System.arraycopy(source, (startLine + i) * rowSize, dest, destRow * rowSize, rowSize);
+            }
+            startLine += blockSize;
+        }
+        return dest;
+    }
+
+    static byte[] randomBytes(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    static byte[] bytes(Mat mat) {
+        byte[] data = new byte[(int) mat.total() * mat.channels()];
+        mat.get(0, 0, data);
+        return data;
+    }
+}
@@ -0,0 +1,66 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie la reprise d'un export : segments terminés conservés pour la même empreinte,
+ * écartés (et signalés comme périmés) pour une autre.
+ */
+class ExportCheckpointTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameFingerprintResumesCompletedSegments() throws IOException {
+        File file = dir.resolve("out.avi.checkpoint").toFile();
+        ExportCheckpoint first = new ExportCheckpoint(file, "source|0-100|encrypt 3 7");
+        assertFalse(first.isResumed());
+        first.markCompleted(0, 50);
+        first.markCompleted(2, 25);
+
+        ExportCheckpoint resumed = new ExportCheckpoint(file, "source|0-100|encrypt 3 7");
+        assertTrue(resumed.isResumed());
+        assertEquals(50, resumed.completedFrames(0));
+        assertEquals(-1, resumed.completedFrames(1));
+        assertEquals(25, resumed.completedFrames(2));
+        assertTrue(resumed.staleSegments().isEmpty());
+    }
+
+    @Test
+    void otherFingerprintDiscardsSegmentsAndListsThemAsStale() throws IOException {
+        File file = dir.resolve("out.avi.checkpoint").toFile();
+        ExportCheckpoint first = new ExportCheckpoint(file, "source|0-100|encrypt 3 7");
+        first.markCompleted(1, 40);
+        first.markCompleted(5, 10);
+
+        ExportCheckpoint other = new ExportCheckpoint(file, "source|0-100|encrypt 4 7");
+        assertFalse(other.isResumed());
+        assertEquals(-1, other.completedFrames(1));
+        assertEquals(-1, other.completedFrames(5));
+        List<Integer> stale = other.staleSegments();
+        assertEquals(2, stale.size());
+        assertTrue(stale.containsAll(List.of(1, 5)));
+    }
+
+    @Test
+    void unreadableCheckpointStartsOver() throws IOException {
+        File file = dir.resolve("out.avi.checkpoint").toFile();
+        Files.write(file.toPath(), new byte[]{'\\', 'u', 'Z', 'Z'});
+
+        ExportCheckpoint checkpoint = new ExportCheckpoint(file, "source|0-100|encrypt 3 7");
+        assertFalse(checkpoint.isResumed());
+        assertTrue(checkpoint.staleSegments().isEmpty());
+    }
+}
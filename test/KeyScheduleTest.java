@@ -0,0 +1,53 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie que la suite de clés est déterministe, accessible dans n'importe quel ordre,
+ * dans les bornes des clés et variée d'une frame à l'autre.
+ */
+class KeyScheduleTest {
+
+    @Test
+    void keysAreDeterministicAndSeekable() {
+        int[] forward = new int[1000];
+        for (int i = 0; i < forward.length; i++) {
+            forward[i] = KeySchedule.keyBitsFor(7, i);
+        }
+        for (int i = forward.length - 1; i >= 0; i -= 3) {
+            assertEquals(forward[i], KeySchedule.keyBitsFor(7, i), "frame " + i);
+        }
+    }
+
+    @Test
+    void keysMatchTheirBitsAndStayInRange() {
+        for (long frame = 0; frame < 1000; frame++) {
+            int bits = KeySchedule.keyBitsFor(3, frame);
+            Key key = KeySchedule.keyFor(3, frame);
+            assertEquals(bits & 0xFF, key.r);
+            assertEquals(bits >> 8, key.s);
+            assertTrue(key.r >= 0 && key.r <= 255 && key.s >= 0 && key.s <= 127, "frame " + frame);
+        }
+    }
+
+    @Test
+    void keysVaryWithFrameAndSeed() {
+        Set<Integer> keys = new HashSet<>();
+        for (long frame = 0; frame < 1000; frame++) {
+            keys.add(KeySchedule.keyBitsFor(11, frame));
+        }
+        assertTrue(keys.size() > 950, keys.size() + " clés distinctes sur 1000 frames");
+
+        int same = 0;
+        for (long frame = 0; frame < 1000; frame++) {
+            if (KeySchedule.keyBitsFor(11, frame) == KeySchedule.keyBitsFor(12, frame)) same++;
+        }
+        assertTrue(same < 5, same + " clés communes aux graines 11 et 12");
+    }
+}
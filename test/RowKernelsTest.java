@@ -0,0 +1,56 @@
+// Auteurs : Audrick SOLTNER et Gaẽl RÖTHLIN
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Vérifie que les noyaux vectorisés donnent exactement les résultats de la version scalaire,
+ * y compris aux extrémités (reste scalaire, décalages non alignés) et sur des lignes assez longues
+ * pour faire déborder des accumulateurs mal vidés.
+ */
+class RowKernelsTest {
+
+    private final RowKernels scalar = new ScalarRowKernels();
+    private final RowKernels vector = new VectorRowKernels();
+
+    @Test
+    void randomRowsMatchScalar() {
+        Random random = new Random(1);
+        for (int t = 0; t < 2000; t++) {
+            int length = random.nextInt(t < 50 ? 300_000 : 5000);
+            byte[] a = new byte[length + 64];
+            byte[] b = new byte[length + 64];
+            random.nextBytes(a);
+            random.nextBytes(b);
+            int aOffset = random.nextInt(64);
+            int bOffset = random.nextInt(64);
+            assertSame(a, aOffset, b, bOffset, length);
+        }
+    }
+
+    @Test
+    void extremeRowsMatchScalar() {
+        // Différences et produits maximaux sur 50 Mo : tout débordement se verrait
+        byte[] high = new byte[50_000_000];
+        byte[] low = new byte[high.length];
+        Arrays.fill(high, (byte) 255);
+        assertSame(high, 0, high, 0, high.length);
+        assertSame(high, 0, low, 0, high.length);
+        assertSame(low, 3, high, 5, high.length - 5);
+    }
+
+    private void assertSame(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        assertEquals(scalar.sumAbsDiff(a, aOffset, b, bOffset, length),
+                vector.sumAbsDiff(a, aOffset, b, bOffset, length), "sumAbsDiff, longueur " + length);
+        long[] expected = new long[5];
+        long[] actual = new long[5];
+        scalar.pearsonSums(a, aOffset, b, bOffset, length, expected);
+        vector.pearsonSums(a, aOffset, b, bOffset, length, actual);
+        assertArrayEquals(expected, actual, "pearsonSums, longueur " + length);
+    }
+}